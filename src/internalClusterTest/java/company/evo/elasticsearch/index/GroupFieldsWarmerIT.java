@@ -0,0 +1,101 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.index;
+
+import company.evo.elasticsearch.plugin.GroupingMixupPlugin;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.test.ESIntegTestCase;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.elasticsearch.cluster.metadata.IndexMetadata.SETTING_NUMBER_OF_REPLICAS;
+import static org.elasticsearch.cluster.metadata.IndexMetadata.SETTING_NUMBER_OF_SHARDS;
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.hamcrest.Matchers.greaterThan;
+
+@ESIntegTestCase.ClusterScope(scope = ESIntegTestCase.Scope.SUITE)
+public class GroupFieldsWarmerIT extends ESIntegTestCase {
+    @Override
+    protected Collection<Class<? extends Plugin>> nodePlugins() {
+        return Collections.singletonList(GroupingMixupPlugin.class);
+    }
+
+    public void testGlobalOrdinalsAreBuiltAfterRefresh() throws Exception {
+        createTestIndex(Settings.builder().putList(GroupFieldsWarmer.GROUP_FIELDS_SETTING.getKey(), "company").build());
+
+        indexDocs();
+        assertBusy(() -> assertThat(globalOrdinalsMemory(), greaterThan(0L)));
+    }
+
+    public void testGroupFieldsAreUpdated() throws Exception {
+        createTestIndex(Settings.EMPTY);
+
+        // Nothing is warmed while the index has no group fields
+        indexDocs();
+        assertEquals(0L, globalOrdinalsMemory());
+        assertAcked(client().admin().indices().prepareUpdateSettings("test")
+                .setSettings(Settings.builder().putList(GroupFieldsWarmer.GROUP_FIELDS_SETTING.getKey(), "company")));
+        client().prepareSearch("test").get();
+        assertBusy(() -> assertThat(globalOrdinalsMemory(), greaterThan(0L)));
+    }
+
+    private void createTestIndex(Settings settings) throws Exception {
+        assertAcked(prepareCreate("test")
+                .setSettings(Settings.builder()
+                        .put(SETTING_NUMBER_OF_SHARDS, 1)
+                        .put(SETTING_NUMBER_OF_REPLICAS, 0)
+                        // global ordinals are only cached for several segments
+                        .put("index.merge.enabled", false)
+                        .put(GroupFieldsWarmer.WARM_INTERVAL_SETTING.getKey(), "100ms")
+                        .put(settings))
+                .addMapping("product",
+                        jsonBuilder().startObject().startObject("product").startObject("properties")
+                                .startObject("company")
+                                .field("type", "keyword")
+                                .endObject()
+                                .endObject().endObject().endObject()));
+        ensureGreen("test");
+    }
+
+    private void indexDocs() {
+        client().prepareIndex("test", "product", "1").setSource("company", "one").get();
+        refresh("test");
+        client().prepareIndex("test", "product", "2").setSource("company", "two").get();
+        refresh("test");
+
+        // Shards are warmed only if they were searched since the previous warming
+        client().prepareSearch("test").get();
+    }
+
+    private long globalOrdinalsMemory() {
+        return client().admin().indices().prepareStats("test")
+                .clear()
+                .setFieldData(true)
+                .setFieldDataFields("company")
+                .get()
+                .getTotal()
+                .getFieldData()
+                .getFields()
+                .get("company");
+    }
+}
@@ -19,32 +19,60 @@
 
 package company.evo.elasticsearch.rescore;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import company.evo.elasticsearch.plugin.GroupingMixupPlugin;
+import company.evo.elasticsearch.profile.DeleteMixupProfileAction;
+import company.evo.elasticsearch.profile.GetMixupProfilesAction;
+import company.evo.elasticsearch.profile.MixupProfile;
+import company.evo.elasticsearch.profile.PutMixupProfileAction;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.search.SearchPhaseExecutionException;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.common.hash.MurmurHash3;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.query.MatchAllQueryBuilder;
 import org.elasticsearch.index.query.MatchQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.script.MockScriptEngine;
+import org.elasticsearch.script.MockScriptPlugin;
 import org.elasticsearch.script.Script;
 import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.test.ESIntegTestCase;
+import org.elasticsearch.watcher.ResourceWatcherService;
 
+import static org.elasticsearch.cluster.metadata.IndexMetadata.SETTING_NUMBER_OF_REPLICAS;
 import static org.elasticsearch.cluster.metadata.IndexMetadata.SETTING_NUMBER_OF_SHARDS;
 import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertHitCount;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertOrderedSearchHits;
 import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 
 @ESIntegTestCase.ClusterScope(scope = ESIntegTestCase.Scope.SUITE)
@@ -56,7 +84,29 @@ public class GroupingMixupRescorerIT extends ESIntegTestCase {
 
     @Override
     protected Collection<Class<? extends Plugin>> nodePlugins() {
-        return Collections.singletonList(GroupingMixupPlugin.class);
+        return Arrays.asList(GroupingMixupPlugin.class, CustomScriptPlugin.class);
+    }
+
+    public static class CustomScriptPlugin extends MockScriptPlugin {
+        @Override
+        protected Map<String, Function<Map<String, Object>, Object>> pluginScripts() {
+            return Collections.singletonMap(
+                    "1 / (1 + params._pos + params._group_size)",
+                    vars -> 1.0 / (
+                            1.0 + (Double) vars.get(GroupingMixupRescorer.POSITION_PARAMETER_NAME) +
+                            (Double) vars.get(GroupingMixupRescorer.GROUP_SIZE_PARAMETER_NAME)
+                    )
+            );
+        }
+    }
+
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal, Settings otherSettings) {
+        // weight tables are checked with the medium frequency
+        return Settings.builder()
+                .put(super.nodeSettings(nodeOrdinal, otherSettings))
+                .put(ResourceWatcherService.RELOAD_INTERVAL_MEDIUM.getKey(), "100ms")
+                .build();
     }
 
     public void testEmptyIndex() throws IOException {
@@ -135,6 +185,83 @@ public class GroupingMixupRescorerIT extends ESIntegTestCase {
         assertOrderedSearchHitScores(resp, 1.2798426F, 0.51189536F, 0.48992145F, 0.44233876F);
     }
 
+    public void testRescoringWithHashGrouping() throws IOException {
+        createIndexAndPopulateDocs();
+
+        for (GroupingMode groupingMode : new GroupingMode[] {GroupingMode.HASH, GroupingMode.CHECKED_HASH}) {
+            SearchResponse resp = client().prepareSearch()
+                    .setQuery(queryBuilder)
+                    .setRescorer(
+                            new GroupingMixupRescorerBuilder(
+                                    "company_id",
+                                    new Script(
+                                            ScriptType.INLINE,
+                                            "grouping_mixup_scripts",
+                                            "position_recip",
+                                            Collections.emptyMap()))
+                                    .groupingMode(groupingMode)
+                                    .windowSize(5))
+                    .execute()
+                    .actionGet();
+            assertHitCount(resp, 4);
+            assertOrderedSearchHits(resp, "1", "4", "2", "3");
+            assertOrderedSearchHitScores(resp, 1.2798426F, 0.51189536F, 0.48992145F, 0.44233876F);
+        }
+    }
+
+    public void testRescoringByKeywordField() throws IOException {
+        createIndexAndPopulateDocs();
+
+        // Without grouping mode hits are grouped by eager global ordinals, otherwise by values
+        for (GroupingMode groupingMode : new GroupingMode[] {null, GroupingMode.VALUES, GroupingMode.HASH}) {
+            GroupingMixupRescorerBuilder rescorer = new GroupingMixupRescorerBuilder(
+                    "company",
+                    new Script(
+                            ScriptType.INLINE,
+                            "grouping_mixup_scripts",
+                            "position_recip",
+                            Collections.emptyMap()))
+                    .windowSize(5);
+            if (groupingMode != null) {
+                rescorer.groupingMode(groupingMode);
+            }
+            SearchResponse resp = client().prepareSearch()
+                    .setQuery(queryBuilder)
+                    .setExplain(true)
+                    .setRescorer(rescorer)
+                    .execute()
+                    .actionGet();
+            assertHitCount(resp, 4);
+            assertOrderedSearchHits(resp, "1", "4", "2", "3");
+            assertOrderedSearchHitScores(resp, 1.2798426F, 0.51189536F, 0.48992145F, 0.44233876F);
+            Explanation explanation = resp.getHits().getAt(3).getExplanation();
+            assertThat(explanation.getDetails()[1].getDescription(), containsString("position [1] in group [one]"));
+        }
+    }
+
+    public void testRescoringSortedIndex() throws IOException {
+        createIndexAndPopulateDocs(Settings.builder().putList("index.sort.field", "company_id", "company").build());
+
+        for (String groupField : new String[] {"company_id", "company"}) {
+            SearchResponse resp = client().prepareSearch()
+                    .setQuery(queryBuilder)
+                    .setRescorer(
+                            new GroupingMixupRescorerBuilder(
+                                    groupField,
+                                    new Script(
+                                            ScriptType.INLINE,
+                                            "grouping_mixup_scripts",
+                                            "position_recip",
+                                            Collections.emptyMap()))
+                                    .windowSize(5))
+                    .execute()
+                    .actionGet();
+            assertHitCount(resp, 4);
+            assertOrderedSearchHits(resp, "1", "4", "2", "3");
+            assertOrderedSearchHitScores(resp, 1.2798426F, 0.51189536F, 0.48992145F, 0.44233876F);
+        }
+    }
+
     public void testRescoringHitsAnotherOrder() throws IOException {
         createIndexAndPopulateDocs();
 
@@ -196,6 +323,65 @@ public class GroupingMixupRescorerIT extends ESIntegTestCase {
         assertOrderedSearchHitScores(resp, 1.2798425F, 0.5118953F, 0.50170016F, 0.4899214F);
     }
 
+    public void testRescoringWithGroupSize() throws IOException {
+        createIndexAndPopulateDocs();
+
+        Map<String, Object> scriptParams = new HashMap<>();
+        scriptParams.put("s", 1.0);
+        Script script = new Script(ScriptType.INLINE, "grouping_mixup_scripts", "position_recip", scriptParams);
+        // Sizes are counted by terms of the keyword field with eager global ordinals
+        SearchResponse resp = client().prepareSearch()
+                .setQuery(queryBuilder)
+                .setExplain(true)
+                .setRescorer(new GroupingMixupRescorerBuilder("company", script).windowSize(5))
+                .execute()
+                .actionGet();
+        assertHitCount(resp, 4);
+        assertOrderedSearchHits(resp, "1", "4", "2", "3");
+        // The hit without a group has size 0 and is not declined
+        assertOrderedSearchHitScores(resp, 0.6098519F, 0.51189536F, 0.2893555F, 0.28550765F);
+        Explanation explanation = resp.getHits().getAt(3).getExplanation();
+        assertThat(
+                explanation.getDetails()[1].getDescription(),
+                containsString("position [1] in group [one] of size [2]")
+        );
+
+        // Numeric fields do not have global ordinals
+        SearchPhaseExecutionException exc = expectThrows(
+                SearchPhaseExecutionException.class,
+                () -> client().prepareSearch()
+                        .setQuery(queryBuilder)
+                        .setRescorer(new GroupingMixupRescorerBuilder("company_id", script).windowSize(5))
+                        .get()
+        );
+        assertThat(
+                exc.shardFailures()[0].reason(),
+                containsString("Group sizes are not available for the group field [company_id]")
+        );
+    }
+
+    public void testGroupSizesForCustomScript() throws IOException {
+        createIndexAndPopulateDocs();
+
+        SearchResponse resp = client().prepareSearch()
+                .setQuery(queryBuilder)
+                .setRescorer(
+                        new GroupingMixupRescorerBuilder(
+                                "company",
+                                new Script(
+                                        ScriptType.INLINE,
+                                        MockScriptEngine.NAME,
+                                        "1 / (1 + params._pos + params._group_size)",
+                                        Collections.emptyMap()))
+                                .groupSizes(true)
+                                .windowSize(5))
+                .execute()
+                .actionGet();
+        assertHitCount(resp, 4);
+        assertOrderedSearchHits(resp, "4", "1", "2", "3");
+        assertOrderedSearchHitScores(resp, 0.51189536F, 0.42661422F, 0.24496073F, 0.22116938F);
+    }
+
     public void testRescoringWithSmallSize() throws IOException {
         createIndexAndPopulateDocs();
 
@@ -249,9 +435,494 @@ public class GroupingMixupRescorerIT extends ESIntegTestCase {
         assertOrderedSearchHitScores(resp, 1.2798426F, 0.51189536F, 0.44233876F, 0.44233876F);
     }
 
+    public void testExplain() throws IOException {
+        createIndexAndPopulateDocs();
+
+        SearchResponse resp = client().prepareSearch()
+                .setQuery(queryBuilder)
+                .setExplain(true)
+                .setRescorer(
+                        new GroupingMixupRescorerBuilder(
+                                "company_id",
+                                new Script(
+                                        ScriptType.INLINE,
+                                        "grouping_mixup_scripts",
+                                        "position_recip",
+                                        Collections.emptyMap()))
+                                .windowSize(5))
+                .execute()
+                .actionGet();
+        assertHitCount(resp, 4);
+        assertOrderedSearchHits(resp, "1", "4", "2", "3");
+        for (SearchHit hit : resp.getHits().getHits()) {
+            assertThat(
+                    (double) hit.getExplanation().getValue().floatValue(),
+                    closeTo(hit.getScore(), 1e-6)
+            );
+        }
+        Explanation explanation = resp.getHits().getAt(3).getExplanation();
+        assertThat(explanation.getDetails()[1].getDescription(), containsString("position [1] in group [1]"));
+        assertThat((double) explanation.getDetails()[1].getValue().floatValue(), closeTo(0.5, 1e-6));
+    }
+
+    public void testWeightTable() throws Exception {
+        createIndexAndPopulateDocs();
+
+        long key = GroupKeys.hash(new BytesRef("1"), new MurmurHash3.Hash128());
+        for (Environment environment : internalCluster().getInstances(Environment.class)) {
+            Path dir = environment.configFile().resolve(WeightTables.DIR_NAME);
+            Files.createDirectories(dir);
+            Path tmpFile = dir.resolve("slow_first.tmp");
+            writeWeightTable(tmpFile, key, 0.5F);
+            Files.move(
+                    tmpFile, dir.resolve("slow_first" + WeightTables.FILE_SUFFIX),
+                    StandardCopyOption.ATOMIC_MOVE
+            );
+        }
+
+        assertBusy(() -> {
+            SearchResponse resp = client().prepareSearch()
+                    .setQuery(queryBuilder)
+                    .setExplain(true)
+                    .setRescorer(
+                            new GroupingMixupRescorerBuilder(
+                                    "company_id",
+                                    new Script(
+                                            ScriptType.INLINE,
+                                            "grouping_mixup_scripts",
+                                            "position_recip",
+                                            Collections.emptyMap()))
+                                    .weightTable("slow_first")
+                                    .windowSize(5))
+                    .execute()
+                    .actionGet();
+            assertHitCount(resp, 4);
+            // without the table the second hit of the group 1 goes last
+            assertOrderedSearchHits(resp, "1", "3", "4", "2");
+            Explanation explanation = resp.getHits().getAt(1).getExplanation();
+            String description = explanation.getDetails()[1].getDescription();
+            assertThat(description, containsString("position [1] in group [1]"));
+            assertThat(description, containsString("with weight [0.5]"));
+            assertThat((double) explanation.getDetails()[1].getValue().floatValue(), closeTo(1.0 / 1.5, 1e-6));
+        }, 30, TimeUnit.SECONDS);
+    }
+
+    public void testConsecutiveSearchesWithDifferentGroupTables() throws IOException {
+        // A single shard so that all searches reuse working buffers of the same node
+        assertAcked(prepareCreate("groups")
+                .setSettings(Settings.builder().put(SETTING_NUMBER_OF_SHARDS, 1).put(SETTING_NUMBER_OF_REPLICAS, 0))
+                .addMapping("product",
+                        jsonBuilder().startObject().startObject("product").startObject("properties")
+                                .startObject("id")
+                                .field("type", "integer")
+                                .endObject()
+                                .startObject("low")
+                                .field("type", "keyword")
+                                .field("eager_global_ordinals", true)
+                                .endObject()
+                                .startObject("high")
+                                .field("type", "keyword")
+                                .field("eager_global_ordinals", true)
+                                .endObject()
+                                .startObject("num")
+                                .field("type", "integer")
+                                .endObject()
+                                .endObject().endObject().endObject()));
+
+        // The first 1000 documents share 50 values of the high cardinality field
+        // and all of them have 5050 distinct values
+        BulkRequestBuilder bulk = client().prepareBulk().setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
+        for (int i = 0; i < 6000; i++) {
+            bulk.add(client().prepareIndex("groups", "product", Integer.toString(i))
+                    .setSource(
+                            "id", i,
+                            "low", "l" + (i % 7),
+                            "high", i < 1000 ? "h" + (i % 50) : "h" + i,
+                            "num", i % 13));
+        }
+        assertFalse(bulk.get().hasFailures());
+        ensureGreen("groups");
+
+        for (int round = 0; round < 5; round++) {
+            // dense ordinals table, hash ordinals table, values table and hash values table
+            assertGroupPositions("low", null);
+            assertGroupPositions("high", null);
+            assertGroupPositions("num", null);
+            assertGroupPositions("high", GroupingMode.HASH);
+        }
+    }
+
+    private void assertGroupPositions(String groupField, GroupingMode groupingMode) {
+        GroupingMixupRescorerBuilder rescorer = new GroupingMixupRescorerBuilder(
+                groupField,
+                new Script(
+                        ScriptType.INLINE,
+                        "grouping_mixup_scripts",
+                        "position_recip",
+                        Collections.emptyMap()))
+                .fetchFields(true)
+                .windowSize(100);
+        if (groupingMode != null) {
+            rescorer.groupingMode(groupingMode);
+        }
+        SearchResponse resp = client().prepareSearch("groups")
+                .setQuery(QueryBuilders.constantScoreQuery(QueryBuilders.rangeQuery("id").lt(1000)))
+                .setSize(100)
+                .addDocValueField(groupField)
+                .setRescorer(rescorer)
+                .get();
+        assertHitCount(resp, 1000);
+
+        Map<String, List<Integer>> groupPositions = new HashMap<>();
+        for (SearchHit hit : resp.getHits().getHits()) {
+            String group = String.valueOf((Object) hit.field(groupField).getValue());
+            int position = hit.field(GroupingMixupFetchSubPhase.POSITION_FIELD_NAME).getValue();
+            assertThat((double) hit.getScore(), closeTo(1.0 / (position + 1), 1e-6));
+            groupPositions.computeIfAbsent(group, g -> new ArrayList<>()).add(position);
+        }
+        // Hits are sorted by decreasing scores so positions of a group go one by one
+        int maxPosition = 0;
+        for (Map.Entry<String, List<Integer>> entry : groupPositions.entrySet()) {
+            List<Integer> positions = entry.getValue();
+            for (int i = 0; i < positions.size(); i++) {
+                assertEquals("Positions of the group [" + entry.getKey() + "]", i, (int) positions.get(i));
+            }
+            maxPosition = Math.max(maxPosition, positions.size() - 1);
+        }
+        assertThat(maxPosition, greaterThanOrEqualTo(1));
+    }
+
+    public void testFetchFields() throws IOException {
+        createIndexAndPopulateDocs();
+
+        SearchResponse resp = client().prepareSearch()
+                .setQuery(queryBuilder)
+                .setRescorer(
+                        new GroupingMixupRescorerBuilder(
+                                "company_id",
+                                new Script(
+                                        ScriptType.INLINE,
+                                        "grouping_mixup_scripts",
+                                        "position_recip",
+                                        Collections.emptyMap()))
+                                .fetchFields(true)
+                                .windowSize(3))
+                .execute()
+                .actionGet();
+        assertHitCount(resp, 4);
+        assertOrderedSearchHits(resp, "1", "4", "3", "2");
+        SearchHits hits = resp.getHits();
+        assertEquals(0, (int) hits.getAt(0).field(GroupingMixupFetchSubPhase.POSITION_FIELD_NAME).getValue());
+        assertEquals(1.0F, (float) hits.getAt(0).field(GroupingMixupFetchSubPhase.FACTOR_FIELD_NAME).getValue(), 1e-6);
+        assertEquals(0, (int) hits.getAt(1).field(GroupingMixupFetchSubPhase.POSITION_FIELD_NAME).getValue());
+        assertEquals(1, (int) hits.getAt(2).field(GroupingMixupFetchSubPhase.POSITION_FIELD_NAME).getValue());
+        assertEquals(0.5F, (float) hits.getAt(2).field(GroupingMixupFetchSubPhase.FACTOR_FIELD_NAME).getValue(), 1e-6);
+        // Outside of the rescore window
+        assertNull(hits.getAt(3).field(GroupingMixupFetchSubPhase.POSITION_FIELD_NAME));
+    }
+
+    public void testFetchFieldsAndExplainWithSeveralShards() throws IOException {
+        // Query and fetch phases are executed in different search contexts
+        createIndexAndPopulateDocs(Settings.builder().put(SETTING_NUMBER_OF_SHARDS, 2).build());
+
+        SearchResponse resp = client().prepareSearch()
+                .setQuery(queryBuilder)
+                .setExplain(true)
+                .setRescorer(
+                        new GroupingMixupRescorerBuilder(
+                                "company_id",
+                                new Script(
+                                        ScriptType.INLINE,
+                                        "grouping_mixup_scripts",
+                                        "position_recip",
+                                        Collections.emptyMap()))
+                                .fetchFields(true)
+                                .windowSize(5))
+                .execute()
+                .actionGet();
+        assertHitCount(resp, 4);
+        for (SearchHit hit : resp.getHits().getHits()) {
+            int position = hit.field(GroupingMixupFetchSubPhase.POSITION_FIELD_NAME).getValue();
+            float factor = hit.field(GroupingMixupFetchSubPhase.FACTOR_FIELD_NAME).getValue();
+            assertEquals(1.0F / (position + 1), factor, 1e-6);
+
+            Explanation explanation = hit.getExplanation();
+            assertThat((double) explanation.getValue().floatValue(), closeTo(hit.getScore(), 1e-6));
+            assertThat(explanation.getDescription(), containsString("grouping mixup"));
+            assertThat(explanation.getDetails()[1].getDescription(), containsString("position [" + position + "]"));
+            assertThat((double) explanation.getDetails()[1].getValue().floatValue(), closeTo(factor, 1e-6));
+        }
+    }
+
+    public void testFetchFieldsAndExplainWithScroll() throws IOException {
+        // Rescored values are not kept in scroll contexts between the query and fetch phases
+        createIndexAndPopulateDocs(Settings.builder().put(SETTING_NUMBER_OF_SHARDS, 2).build());
+
+        SearchResponse resp = client().prepareSearch()
+                .setQuery(queryBuilder)
+                .setExplain(true)
+                .setScroll(TimeValue.timeValueMinutes(1))
+                .setRescorer(
+                        new GroupingMixupRescorerBuilder(
+                                "company_id",
+                                new Script(
+                                        ScriptType.INLINE,
+                                        "grouping_mixup_scripts",
+                                        "position_recip",
+                                        Collections.emptyMap()))
+                                .fetchFields(true)
+                                .windowSize(5))
+                .execute()
+                .actionGet();
+        try {
+            assertHitCount(resp, 4);
+            for (SearchHit hit : resp.getHits().getHits()) {
+                assertNull(hit.field(GroupingMixupFetchSubPhase.POSITION_FIELD_NAME));
+                assertThat(
+                        hit.getExplanation().getDescription(),
+                        containsString("grouping mixup values are not available for scroll and point in time searches")
+                );
+            }
+        } finally {
+            clearScroll(resp.getScrollId());
+        }
+    }
+
+    public void testAdaptiveWindow() throws IOException {
+        createIndexAndPopulateDocs();
+
+        SearchResponse resp = client().prepareSearch()
+                .setQuery(queryBuilder)
+                .setRescorer(
+                        new GroupingMixupRescorerBuilder(
+                                "company_id",
+                                new Script(
+                                        ScriptType.INLINE,
+                                        "grouping_mixup_scripts",
+                                        "position_recip",
+                                        Collections.emptyMap()))
+                                .adaptiveWindow(new AdaptiveWindow(2, 1))
+                                .fetchFields(true)
+                                .windowSize(5))
+                .execute()
+                .actionGet();
+        assertHitCount(resp, 4);
+        // The first chunk contains hits "1" and "3" of the same group that is enough
+        Map<String, SearchHit> hitsById = new HashMap<>();
+        for (SearchHit hit : resp.getHits().getHits()) {
+            hitsById.put(hit.getId(), hit);
+        }
+        assertEquals(0, (int) hitsById.get("1").field(GroupingMixupFetchSubPhase.POSITION_FIELD_NAME).getValue());
+        assertEquals(1, (int) hitsById.get("3").field(GroupingMixupFetchSubPhase.POSITION_FIELD_NAME).getValue());
+        assertNull(hitsById.get("4").field(GroupingMixupFetchSubPhase.POSITION_FIELD_NAME));
+        assertNull(hitsById.get("2").field(GroupingMixupFetchSubPhase.POSITION_FIELD_NAME));
+    }
+
+    public void testLimits() throws IOException {
+        createIndexAndPopulateDocs();
+
+        GroupingMixupRescorerBuilder rescorerBuilder = new GroupingMixupRescorerBuilder(
+                "company_id",
+                new Script(
+                        ScriptType.INLINE,
+                        "grouping_mixup_scripts",
+                        "position_recip",
+                        Collections.emptyMap()))
+                .windowSize(5);
+
+        try {
+            assertAcked(client().admin().cluster().prepareUpdateSettings()
+                    .setTransientSettings(Settings.builder()
+                            .put(GroupingMixupSettings.MAX_WINDOW_SIZE.getKey(), 4)));
+            SearchPhaseExecutionException exc = expectThrows(
+                    SearchPhaseExecutionException.class,
+                    () -> client().prepareSearch()
+                            .setQuery(queryBuilder)
+                            .setRescorer(rescorerBuilder)
+                            .get()
+            );
+            assertThat(exc.shardFailures()[0].reason(), containsString("Rescore window [5] is too large"));
+
+            assertAcked(client().admin().cluster().prepareUpdateSettings()
+                    .setTransientSettings(Settings.builder()
+                            .putNull(GroupingMixupSettings.MAX_WINDOW_SIZE.getKey())
+                            .put(GroupingMixupSettings.MAX_GROUPS.getKey(), 2)));
+            exc = expectThrows(
+                    SearchPhaseExecutionException.class,
+                    () -> client().prepareSearch()
+                            .setQuery(queryBuilder)
+                            .setRescorer(rescorerBuilder)
+                            .get()
+            );
+            assertThat(exc.shardFailures()[0].reason(), containsString("Number of groups in the rescore window exceeds [2]"));
+        } finally {
+            assertAcked(client().admin().cluster().prepareUpdateSettings()
+                    .setTransientSettings(Settings.builder()
+                            .putNull(GroupingMixupSettings.MAX_WINDOW_SIZE.getKey())
+                            .putNull(GroupingMixupSettings.MAX_GROUPS.getKey())));
+        }
+
+        SearchResponse resp = client().prepareSearch()
+                .setQuery(queryBuilder)
+                .setRescorer(rescorerBuilder)
+                .get();
+        assertHitCount(resp, 4);
+    }
+
+    public void testProfileWithoutGroupingMode() throws IOException {
+        createIndexAndPopulateDocs();
+
+        Map<String, Object> scriptParams = new HashMap<>();
+        scriptParams.put("s", 1.0);
+        MixupProfile profile = new MixupProfile(
+                "company",
+                new Script(ScriptType.INLINE, "grouping_mixup_scripts", "position_recip", scriptParams),
+                null,
+                null,
+                null,
+                null
+        );
+        assertAcked(client().execute(
+                PutMixupProfileAction.INSTANCE, new PutMixupProfileAction.Request("sizes", profile)
+        ).actionGet());
+        try {
+            GetMixupProfilesAction.Response getResp = client().execute(
+                    GetMixupProfilesAction.INSTANCE, new GetMixupProfilesAction.Request("sizes")
+            ).actionGet();
+            assertNull(getResp.profiles().get("sizes").groupingMode());
+
+            // Group sizes are counted only when hits are grouped by global ordinals
+            SearchResponse resp = client().prepareSearch()
+                    .setQuery(queryBuilder)
+                    .setExplain(true)
+                    .setRescorer(new GroupingMixupRescorerBuilder(null, null).profile("sizes").windowSize(5))
+                    .get();
+            assertHitCount(resp, 4);
+            assertOrderedSearchHits(resp, "1", "4", "2", "3");
+            assertOrderedSearchHitScores(resp, 0.6098519F, 0.51189536F, 0.2893555F, 0.28550765F);
+            Explanation explanation = resp.getHits().getAt(3).getExplanation();
+            assertThat(
+                    explanation.getDetails()[1].getDescription(),
+                    containsString("position [1] in group [one] of size [2]")
+            );
+        } finally {
+            assertAcked(client().execute(
+                    DeleteMixupProfileAction.INSTANCE, new DeleteMixupProfileAction.Request("sizes")
+            ).actionGet());
+        }
+
+        // Such a profile could never be used
+        MixupProfile hashProfile = new MixupProfile(
+                "company",
+                new Script(ScriptType.INLINE, "grouping_mixup_scripts", "position_recip", scriptParams),
+                GroupingMode.HASH,
+                null,
+                null,
+                null
+        );
+        IllegalArgumentException exc = expectThrows(
+                IllegalArgumentException.class,
+                () -> client().execute(
+                        PutMixupProfileAction.INSTANCE, new PutMixupProfileAction.Request("sizes", hashProfile)
+                ).actionGet()
+        );
+        assertThat(
+                exc.getMessage(),
+                containsString("uses group sizes which are not available when [grouping_mode] is set")
+        );
+    }
+
+    public void testProfile() throws IOException {
+        createIndexAndPopulateDocs();
+
+        MixupProfile profile = new MixupProfile(
+                "company_id",
+                new Script(ScriptType.INLINE, "grouping_mixup_scripts", "position_recip", Collections.emptyMap()),
+                GroupingMode.HASH,
+                null,
+                null,
+                null
+        );
+        assertAcked(client().execute(
+                PutMixupProfileAction.INSTANCE, new PutMixupProfileAction.Request("default", profile)
+        ).actionGet());
+        try {
+            SearchResponse resp = client().prepareSearch()
+                    .setQuery(queryBuilder)
+                    .setRescorer(new GroupingMixupRescorerBuilder(null, null).profile("default").windowSize(5))
+                    .get();
+            assertHitCount(resp, 4);
+            assertOrderedSearchHits(resp, "1", "4", "2", "3");
+            assertOrderedSearchHitScores(resp, 1.2798426F, 0.51189536F, 0.48992145F, 0.44233876F);
+        } finally {
+            assertAcked(client().execute(
+                    DeleteMixupProfileAction.INSTANCE, new DeleteMixupProfileAction.Request("default")
+            ).actionGet());
+        }
+
+        SearchPhaseExecutionException exc = expectThrows(
+                SearchPhaseExecutionException.class,
+                () -> client().prepareSearch()
+                        .setQuery(queryBuilder)
+                        .setRescorer(new GroupingMixupRescorerBuilder(null, null).profile("default"))
+                        .get()
+        );
+        assertThat(exc.shardFailures()[0].reason(), containsString("Unknown grouping mixup profile [default]"));
+    }
+
+    public void testProfileWithUnmappedField() throws IOException {
+        createIndexAndPopulateDocs();
+
+        MixupProfile profile = new MixupProfile(
+                "seller_id",
+                new Script(ScriptType.INLINE, "grouping_mixup_scripts", "position_recip", Collections.emptyMap()),
+                null,
+                null,
+                null,
+                null
+        );
+        assertAcked(client().execute(
+                PutMixupProfileAction.INSTANCE, new PutMixupProfileAction.Request("sellers", profile)
+        ).actionGet());
+        try {
+            SearchPhaseExecutionException exc = expectThrows(
+                    SearchPhaseExecutionException.class,
+                    () -> client().prepareSearch()
+                            .setQuery(queryBuilder)
+                            .setRescorer(new GroupingMixupRescorerBuilder(null, null).profile("sellers"))
+                            .get()
+            );
+            assertEquals(RestStatus.BAD_REQUEST, exc.status());
+            assertThat(
+                    exc.shardFailures()[0].reason(),
+                    containsString("Group field [seller_id] is not mapped, grouping mixup profile [sellers]")
+            );
+        } finally {
+            assertAcked(client().execute(
+                    DeleteMixupProfileAction.INSTANCE, new DeleteMixupProfileAction.Request("sellers")
+            ).actionGet());
+        }
+    }
+
+    private static void writeWeightTable(Path path, long key, float weight) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(path);
+             DataOutputStream out = new DataOutputStream(stream)) {
+            out.writeInt(WeightTable.MAGIC);
+            out.writeInt(WeightTable.VERSION);
+            out.writeInt(1);
+            out.writeInt(0);
+            out.writeLong(key);
+            out.writeFloat(weight);
+        }
+    }
+
     private void createIndexAndPopulateDocs() throws IOException {
+        createIndexAndPopulateDocs(Settings.EMPTY);
+    }
+
+    private void createIndexAndPopulateDocs(Settings indexSettings) throws IOException {
         assertAcked(prepareCreate("test")
-                .setSettings(Settings.builder().put(SETTING_NUMBER_OF_SHARDS, 1))
+                .setSettings(Settings.builder().put(SETTING_NUMBER_OF_SHARDS, 1).put(indexSettings))
                 .addMapping("product",
                         jsonBuilder().startObject().startObject("product").startObject("properties")
                                 .startObject("name")
@@ -261,24 +932,31 @@ public class GroupingMixupRescorerIT extends ESIntegTestCase {
                                 .startObject("company_id")
                                 .field("type", "integer")
                                 .endObject()
+                                .startObject("company")
+                                .field("type", "keyword")
+                                .field("eager_global_ordinals", true)
+                                .endObject()
                                 .endObject().endObject().endObject()));
 
         client().prepareIndex("test", "product", "1")
                 .setSource(
                         "name", "the quick brown fox",
-                        "company_id", 1)
+                        "company_id", 1,
+                        "company", "one")
                 .execute()
                 .actionGet();
         client().prepareIndex("test", "product", "2")
                 .setSource(
                         "name", "the quick lazy huge fox jumps over the tree",
-                        "company_id", 2)
+                        "company_id", 2,
+                        "company", "two")
                 .execute()
                 .actionGet();
         client().prepareIndex("test", "product", "3")
                 .setSource(
                         "name", "quick huge brown fox",
-                        "company_id", 1)
+                        "company_id", 1,
+                        "company", "one")
                 .execute()
                 .actionGet();
         client().prepareIndex("test", "product", "4")
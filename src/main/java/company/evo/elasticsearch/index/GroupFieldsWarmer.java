@@ -0,0 +1,193 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.index;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.fielddata.IndexOrdinalsFieldData;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.query.SearchExecutionContext;
+import org.elasticsearch.index.shard.IndexEventListener;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.IndexShardState;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.cluster.IndicesClusterStateService.AllocatedIndices.IndexRemovalReason;
+import org.elasticsearch.threadpool.Scheduler;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Loads field data and global ordinals of the group fields listed in the
+ * {@code index.grouping_mixup.fields} setting in background after a shard gets a new reader.
+ * It is a best-effort addition: shards are polled, so a search right after a refresh can
+ * still load the field data itself. Use {@code eager_global_ordinals} mapping option
+ * to build global ordinals before a refreshed reader becomes visible.
+ * Shards that were not searched since the previous warming are skipped to let them become search idle.
+ * Indices without group fields are not polled.
+ */
+public class GroupFieldsWarmer implements IndexEventListener {
+    public static final Setting<List<String>> GROUP_FIELDS_SETTING = Setting.listSetting(
+            "index.grouping_mixup.fields", Collections.emptyList(), Function.identity(),
+            Property.IndexScope, Property.Dynamic
+    );
+    public static final Setting<TimeValue> WARM_INTERVAL_SETTING = Setting.timeSetting(
+            "index.grouping_mixup.warm_interval", TimeValue.timeValueSeconds(1), TimeValue.timeValueMillis(100),
+            Property.IndexScope
+    );
+
+    private static final String WARMER_SOURCE = "grouping_mixup_warmer";
+
+    private final Logger logger = LogManager.getLogger(getClass());
+
+    private final ThreadPool threadPool;
+    private volatile List<String> groupFields;
+    // guarded by this
+    private Scheduler.Cancellable warmTask;
+    private boolean closed = false;
+
+    private static class WarmedReader {
+        final long version;
+        final long lastSearcherAccess;
+
+        WarmedReader(long version, long lastSearcherAccess) {
+            this.version = version;
+            this.lastSearcherAccess = lastSearcherAccess;
+        }
+    }
+
+    private final Map<ShardId, WarmedReader> warmedReaders = new ConcurrentHashMap<>();
+
+    public GroupFieldsWarmer(ThreadPool threadPool, Settings indexSettings) {
+        this.threadPool = threadPool;
+        this.groupFields = GROUP_FIELDS_SETTING.get(indexSettings);
+    }
+
+    @Override
+    public void afterIndexCreated(IndexService indexService) {
+        indexService.getIndexSettings().getScopedSettings()
+                .addSettingsUpdateConsumer(GROUP_FIELDS_SETTING, fields -> updateGroupFields(indexService, fields));
+        updateGroupFields(indexService, groupFields);
+    }
+
+    @Override
+    public synchronized void beforeIndexRemoved(IndexService indexService, IndexRemovalReason reason) {
+        closed = true;
+        cancelWarmTask();
+    }
+
+    /**
+     * Polls shards only while there are group fields to warm.
+     */
+    private synchronized void updateGroupFields(IndexService indexService, List<String> fields) {
+        groupFields = fields;
+        if (fields.isEmpty() || closed) {
+            cancelWarmTask();
+        } else if (warmTask == null) {
+            TimeValue interval = WARM_INTERVAL_SETTING.get(indexService.getIndexSettings().getSettings());
+            warmTask = threadPool.scheduleWithFixedDelay(
+                    () -> warm(indexService), interval, ThreadPool.Names.WARMER
+            );
+        }
+    }
+
+    private void cancelWarmTask() {
+        if (warmTask != null) {
+            warmTask.cancel();
+            warmTask = null;
+        }
+    }
+
+    @Override
+    public void afterIndexShardClosed(ShardId shardId, IndexShard indexShard, Settings indexSettings) {
+        warmedReaders.remove(shardId);
+    }
+
+    private void warm(IndexService indexService) {
+        List<String> fields = groupFields;
+        if (fields.isEmpty()) {
+            return;
+        }
+        for (IndexShard shard : indexService) {
+            if (shard.state() != IndexShardState.STARTED) {
+                continue;
+            }
+            try {
+                warmShard(indexService, shard, fields);
+            } catch (Exception e) {
+                logger.warn(new ParameterizedMessage("{} failed to warm group fields", shard.shardId()), e);
+            }
+        }
+    }
+
+    private void warmShard(IndexService indexService, IndexShard shard, List<String> fields) {
+        ShardId shardId = shard.shardId();
+        WarmedReader warmed = warmedReaders.get(shardId);
+        if (warmed != null && warmed.lastSearcherAccess == shard.getLastSearcherAccess()) {
+            // Nobody has searched the shard since the last warming
+            return;
+        }
+
+        try (Engine.Searcher searcher = shard.acquireSearcher(WARMER_SOURCE)) {
+            DirectoryReader reader = searcher.getDirectoryReader();
+            if (warmed == null || warmed.version != reader.getVersion()) {
+                long startTime = System.nanoTime();
+                SearchExecutionContext context = indexService.newSearchExecutionContext(
+                        shardId.id(), 0, searcher, threadPool::absoluteTimeInMillis, null, Collections.emptyMap()
+                );
+                for (String field : fields) {
+                    if (!context.isFieldMapped(field)) {
+                        continue;
+                    }
+                    MappedFieldType fieldType = context.getFieldType(field);
+                    IndexFieldData<?> fieldData = context.getForField(fieldType);
+                    for (LeafReaderContext leaf : reader.leaves()) {
+                        fieldData.load(leaf);
+                    }
+                    if (fieldData instanceof IndexOrdinalsFieldData) {
+                        // global ordinals are built lazily unless eager_global_ordinals is enabled
+                        ((IndexOrdinalsFieldData) fieldData).loadGlobal(reader);
+                    }
+                }
+                if (logger.isTraceEnabled()) {
+                    logger.trace(
+                            "{} warmed group fields {} in [{}]",
+                            shardId, fields, TimeValue.timeValueNanos(System.nanoTime() - startTime)
+                    );
+                }
+            }
+            warmedReaders.put(shardId, new WarmedReader(reader.getVersion(), shard.getLastSearcherAccess()));
+        }
+    }
+}
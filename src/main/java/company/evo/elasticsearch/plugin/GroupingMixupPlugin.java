@@ -19,23 +19,146 @@
 
 package company.evo.elasticsearch.plugin;
 
+import company.evo.elasticsearch.index.GroupFieldsWarmer;
+import company.evo.elasticsearch.profile.DeleteMixupProfileAction;
+import company.evo.elasticsearch.profile.GetMixupProfilesAction;
+import company.evo.elasticsearch.profile.MixupProfiles;
+import company.evo.elasticsearch.profile.MixupProfilesMetadata;
+import company.evo.elasticsearch.profile.PutMixupProfileAction;
+import company.evo.elasticsearch.profile.RestDeleteMixupProfileAction;
+import company.evo.elasticsearch.profile.RestGetMixupProfilesAction;
+import company.evo.elasticsearch.profile.RestPutMixupProfileAction;
+import company.evo.elasticsearch.profile.TransportDeleteMixupProfileAction;
+import company.evo.elasticsearch.profile.TransportGetMixupProfilesAction;
+import company.evo.elasticsearch.profile.TransportPutMixupProfileAction;
+import company.evo.elasticsearch.rescore.GroupingMixupFetchSubPhase;
 import company.evo.elasticsearch.rescore.GroupingMixupRescorerBuilder;
+import company.evo.elasticsearch.rescore.GroupingMixupSettings;
+import company.evo.elasticsearch.rescore.RescoredHitsTransferListener;
+import company.evo.elasticsearch.rescore.WeightTables;
 import company.evo.elasticsearch.script.PositionRecipScriptEngine;
 
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.NamedDiff;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.IndexScopedSettings;
+import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.env.NodeEnvironment;
+import org.elasticsearch.index.IndexModule;
+import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.plugins.ScriptPlugin;
 import org.elasticsearch.plugins.SearchPlugin;
+import org.elasticsearch.repositories.RepositoriesService;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestHandler;
 import org.elasticsearch.script.ScriptContext;
 import org.elasticsearch.script.ScriptEngine;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.search.fetch.FetchSubPhase;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.ResourceWatcherService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 import static java.util.Collections.singletonList;
 
 public class GroupingMixupPlugin extends Plugin
-        implements SearchPlugin, ScriptPlugin
+        implements SearchPlugin, ScriptPlugin, ActionPlugin
 {
+    private ThreadPool threadPool;
+
+    @Override
+    public Collection<Object> createComponents(Client client, ClusterService clusterService, ThreadPool threadPool,
+                                               ResourceWatcherService resourceWatcherService,
+                                               ScriptService scriptService, NamedXContentRegistry xContentRegistry,
+                                               Environment environment, NodeEnvironment nodeEnvironment,
+                                               NamedWriteableRegistry namedWriteableRegistry,
+                                               IndexNameExpressionResolver indexNameExpressionResolver,
+                                               Supplier<RepositoriesService> repositoriesServiceSupplier) {
+        this.threadPool = threadPool;
+        GroupingMixupSettings.init(clusterService.getSettings(), clusterService.getClusterSettings());
+        try {
+            WeightTables.init(environment.configFile(), resourceWatcherService);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        MixupProfiles.init(clusterService, scriptService);
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<Setting<?>> getSettings() {
+        List<Setting<?>> settings = new ArrayList<>(GroupingMixupSettings.settings());
+        settings.add(GroupFieldsWarmer.GROUP_FIELDS_SETTING);
+        settings.add(GroupFieldsWarmer.WARM_INTERVAL_SETTING);
+        return settings;
+    }
+
+    @Override
+    public List<NamedWriteableRegistry.Entry> getNamedWriteables() {
+        return Arrays.asList(
+                new NamedWriteableRegistry.Entry(
+                        Metadata.Custom.class, MixupProfilesMetadata.TYPE, MixupProfilesMetadata::new
+                ),
+                new NamedWriteableRegistry.Entry(
+                        NamedDiff.class, MixupProfilesMetadata.TYPE, MixupProfilesMetadata::readDiffFrom
+                )
+        );
+    }
+
+    @Override
+    public List<NamedXContentRegistry.Entry> getNamedXContent() {
+        return singletonList(
+                new NamedXContentRegistry.Entry(
+                        Metadata.Custom.class,
+                        new ParseField(MixupProfilesMetadata.TYPE),
+                        MixupProfilesMetadata::fromXContent
+                )
+        );
+    }
+
+    @Override
+    public List<ActionHandler<? extends ActionRequest, ? extends ActionResponse>> getActions() {
+        return Arrays.asList(
+                new ActionHandler<>(PutMixupProfileAction.INSTANCE, TransportPutMixupProfileAction.class),
+                new ActionHandler<>(DeleteMixupProfileAction.INSTANCE, TransportDeleteMixupProfileAction.class),
+                new ActionHandler<>(GetMixupProfilesAction.INSTANCE, TransportGetMixupProfilesAction.class)
+        );
+    }
+
+    @Override
+    public List<RestHandler> getRestHandlers(Settings settings, RestController restController,
+                                             ClusterSettings clusterSettings,
+                                             IndexScopedSettings indexScopedSettings,
+                                             SettingsFilter settingsFilter,
+                                             IndexNameExpressionResolver indexNameExpressionResolver,
+                                             Supplier<DiscoveryNodes> nodesInCluster) {
+        return Arrays.asList(
+                new RestPutMixupProfileAction(),
+                new RestDeleteMixupProfileAction(),
+                new RestGetMixupProfilesAction()
+        );
+    }
+
     @Override
     public List<RescorerSpec<?>> getRescorers() {
         return singletonList(
@@ -47,6 +170,17 @@ public class GroupingMixupPlugin extends Plugin
         );
     }
 
+    @Override
+    public List<FetchSubPhase> getFetchSubPhases(FetchPhaseConstructionContext context) {
+        return singletonList(new GroupingMixupFetchSubPhase());
+    }
+
+    @Override
+    public void onIndexModule(IndexModule indexModule) {
+        indexModule.addSearchOperationListener(new RescoredHitsTransferListener());
+        indexModule.addIndexEventListener(new GroupFieldsWarmer(threadPool, indexModule.getSettings()));
+    }
+
     @Override
     public ScriptEngine getScriptEngine(Settings settings, Collection<ScriptContext<?>> contexts) {
         return new PositionRecipScriptEngine();
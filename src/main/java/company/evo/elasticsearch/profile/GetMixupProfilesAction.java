@@ -0,0 +1,103 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.profile;
+
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.ActionType;
+import org.elasticsearch.action.support.master.MasterNodeReadRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class GetMixupProfilesAction extends ActionType<GetMixupProfilesAction.Response> {
+    public static final GetMixupProfilesAction INSTANCE = new GetMixupProfilesAction();
+    public static final String NAME = "cluster:admin/grouping_mixup/profile/get";
+
+    private GetMixupProfilesAction() {
+        super(NAME, Response::new);
+    }
+
+    public static class Request extends MasterNodeReadRequest<Request> {
+        // null means all the profiles
+        private final String name;
+
+        public Request(String name) {
+            this.name = name;
+        }
+
+        public Request(StreamInput in) throws IOException {
+            super(in);
+            this.name = in.readOptionalString();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeOptionalString(name);
+        }
+
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public ActionRequestValidationException validate() {
+            return null;
+        }
+    }
+
+    public static class Response extends ActionResponse implements ToXContentObject {
+        private final Map<String, MixupProfile> profiles;
+
+        public Response(Map<String, MixupProfile> profiles) {
+            this.profiles = profiles;
+        }
+
+        public Response(StreamInput in) throws IOException {
+            super(in);
+            this.profiles = in.readMap(StreamInput::readString, MixupProfile::new);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeMap(profiles, StreamOutput::writeString, (o, profile) -> profile.writeTo(o));
+        }
+
+        public Map<String, MixupProfile> profiles() {
+            return profiles;
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            for (Map.Entry<String, MixupProfile> profile : new TreeMap<>(profiles).entrySet()) {
+                builder.field(profile.getKey(), profile.getValue());
+            }
+            builder.endObject();
+            return builder;
+        }
+    }
+}
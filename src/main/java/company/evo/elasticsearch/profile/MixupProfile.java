@@ -0,0 +1,186 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.profile;
+
+import company.evo.elasticsearch.rescore.AdaptiveWindow;
+import company.evo.elasticsearch.rescore.GroupingMode;
+
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ConstructingObjectParser;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.script.Script;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Stored definition of the grouping mixup rescorer that search requests reference by name.
+ */
+public class MixupProfile implements Writeable, ToXContentObject {
+    private static ParseField GROUPING_FIELD_FIELD = new ParseField("field", "group_field");
+    private static ParseField RESCORE_SCRIPT_FIELD = new ParseField("rescore_script", "decline_script");
+    private static ParseField GROUPING_MODE_FIELD = new ParseField("grouping_mode");
+    private static ParseField WEIGHT_TABLE_FIELD = new ParseField("weight_table");
+    private static ParseField ADAPTIVE_WINDOW_FIELD = new ParseField("adaptive_window");
+    private static ParseField GROUP_SIZES_FIELD = new ParseField("group_sizes");
+
+    private static final ConstructingObjectParser<MixupProfile, Void> PARSER =
+            new ConstructingObjectParser<>(
+                    "grouping_mixup_profile",
+                    args -> new MixupProfile(
+                            (String) args[0],
+                            (Script) args[1],
+                            args[2] == null ? null : GroupingMode.fromString((String) args[2]),
+                            (String) args[3],
+                            (AdaptiveWindow) args[4],
+                            (Boolean) args[5]
+                    )
+            );
+    static {
+        PARSER.declareString(ConstructingObjectParser.constructorArg(), GROUPING_FIELD_FIELD);
+        PARSER.declareObject(ConstructingObjectParser.constructorArg(), (p, c) -> Script.parse(p), RESCORE_SCRIPT_FIELD);
+        PARSER.declareString(ConstructingObjectParser.optionalConstructorArg(), GROUPING_MODE_FIELD);
+        PARSER.declareString(ConstructingObjectParser.optionalConstructorArg(), WEIGHT_TABLE_FIELD);
+        PARSER.declareObject(
+                ConstructingObjectParser.optionalConstructorArg(),
+                (p, c) -> AdaptiveWindow.fromXContent(p),
+                ADAPTIVE_WINDOW_FIELD
+        );
+        PARSER.declareBoolean(ConstructingObjectParser.optionalConstructorArg(), GROUP_SIZES_FIELD);
+    }
+
+    private final String groupByField;
+    private final Script rescoreScript;
+    private final GroupingMode groupingMode;
+    private final String weightTable;
+    private final AdaptiveWindow adaptiveWindow;
+    private final Boolean groupSizes;
+
+    public MixupProfile(String groupByField, Script rescoreScript, GroupingMode groupingMode,
+                        String weightTable, AdaptiveWindow adaptiveWindow, Boolean groupSizes) {
+        this.groupByField = Objects.requireNonNull(groupByField);
+        this.rescoreScript = Objects.requireNonNull(rescoreScript);
+        this.groupingMode = groupingMode;
+        this.weightTable = weightTable;
+        this.adaptiveWindow = adaptiveWindow;
+        this.groupSizes = groupSizes;
+    }
+
+    public MixupProfile(StreamInput in) throws IOException {
+        this.groupByField = in.readString();
+        this.rescoreScript = new Script(in);
+        this.groupingMode = in.readBoolean() ? GroupingMode.readFrom(in) : null;
+        this.weightTable = in.readOptionalString();
+        this.adaptiveWindow = in.readOptionalWriteable(AdaptiveWindow::new);
+        this.groupSizes = in.readOptionalBoolean();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeString(groupByField);
+        rescoreScript.writeTo(out);
+        out.writeBoolean(groupingMode != null);
+        if (groupingMode != null) {
+            groupingMode.writeTo(out);
+        }
+        out.writeOptionalString(weightTable);
+        out.writeOptionalWriteable(adaptiveWindow);
+        out.writeOptionalBoolean(groupSizes);
+    }
+
+    public String groupByField() {
+        return groupByField;
+    }
+
+    public Script rescoreScript() {
+        return rescoreScript;
+    }
+
+    /**
+     * Returns {@code null} if the grouping mode was not set, then it is chosen for the group field.
+     */
+    public GroupingMode groupingMode() {
+        return groupingMode;
+    }
+
+    public String weightTable() {
+        return weightTable;
+    }
+
+    public AdaptiveWindow adaptiveWindow() {
+        return adaptiveWindow;
+    }
+
+    public Boolean groupSizes() {
+        return groupSizes;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        builder.field(GROUPING_FIELD_FIELD.getPreferredName(), groupByField);
+        builder.field(RESCORE_SCRIPT_FIELD.getPreferredName(), rescoreScript);
+        if (groupingMode != null) {
+            builder.field(GROUPING_MODE_FIELD.getPreferredName(), groupingMode.toString());
+        }
+        if (weightTable != null) {
+            builder.field(WEIGHT_TABLE_FIELD.getPreferredName(), weightTable);
+        }
+        if (adaptiveWindow != null) {
+            builder.field(ADAPTIVE_WINDOW_FIELD.getPreferredName(), adaptiveWindow);
+        }
+        if (groupSizes != null) {
+            builder.field(GROUP_SIZES_FIELD.getPreferredName(), groupSizes);
+        }
+        builder.endObject();
+        return builder;
+    }
+
+    public static MixupProfile fromXContent(XContentParser parser) {
+        return PARSER.apply(parser, null);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        MixupProfile other = (MixupProfile) obj;
+        return groupByField.equals(other.groupByField)
+                && rescoreScript.equals(other.rescoreScript)
+                && groupingMode == other.groupingMode
+                && Objects.equals(weightTable, other.weightTable)
+                && Objects.equals(adaptiveWindow, other.adaptiveWindow)
+                && Objects.equals(groupSizes, other.groupSizes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(groupByField, rescoreScript, groupingMode, weightTable, adaptiveWindow, groupSizes);
+    }
+}
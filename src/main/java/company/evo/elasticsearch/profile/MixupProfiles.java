@@ -0,0 +1,153 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.profile;
+
+import company.evo.elasticsearch.rescore.PositionDecayTable;
+import company.evo.elasticsearch.script.PositionDecay;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.script.ScoreScript;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptService;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Profiles from the cluster state prepared for search requests: scripts are compiled
+ * and decay tables are filled in advance, once per change of a profile.
+ */
+public final class MixupProfiles implements ClusterStateListener {
+    // positions with precalculated decline factors
+    public static final int DECAY_TABLE_SIZE = 1024;
+
+    private static final Logger logger = LogManager.getLogger(MixupProfiles.class);
+
+    private static volatile Map<String, CompiledProfile> compiledProfiles = Collections.emptyMap();
+
+    private final ScriptService scriptService;
+    private MixupProfilesMetadata currentMetadata = MixupProfilesMetadata.EMPTY;
+
+    public static class CompiledProfile {
+        private final MixupProfile profile;
+        private final ScoreScript.Factory scriptFactory;
+        private final PositionDecayTable decayTable;
+        private final boolean usesGroupSize;
+
+        CompiledProfile(MixupProfile profile, ScoreScript.Factory scriptFactory, PositionDecayTable decayTable,
+                        boolean usesGroupSize) {
+            this.profile = profile;
+            this.scriptFactory = scriptFactory;
+            this.decayTable = decayTable;
+            this.usesGroupSize = usesGroupSize;
+        }
+
+        public MixupProfile profile() {
+            return profile;
+        }
+
+        public ScoreScript.Factory scriptFactory() {
+            return scriptFactory;
+        }
+
+        /**
+         * Returns decline factors when the script depends only on positions, otherwise {@code null}.
+         */
+        public PositionDecayTable decayTable() {
+            return decayTable;
+        }
+
+        /**
+         * Returns {@code true} if the decline script needs group sizes.
+         */
+        public boolean usesGroupSize() {
+            return usesGroupSize;
+        }
+    }
+
+    private MixupProfiles(ScriptService scriptService) {
+        this.scriptService = scriptService;
+    }
+
+    public static void init(ClusterService clusterService, ScriptService scriptService) {
+        clusterService.addListener(new MixupProfiles(scriptService));
+    }
+
+    public static CompiledProfile get(String name) {
+        CompiledProfile profile = compiledProfiles.get(name);
+        if (profile == null) {
+            throw new IllegalArgumentException("Unknown grouping mixup profile [" + name + "]");
+        }
+        return profile;
+    }
+
+    static CompiledProfile compile(MixupProfile profile, ScriptService scriptService) {
+        Script script = profile.rescoreScript();
+        ScoreScript.Factory scriptFactory = scriptService.compile(script, ScoreScript.CONTEXT);
+        PositionDecayTable decayTable = null;
+        boolean usesGroupSize = false;
+        if (scriptFactory instanceof PositionDecay.Factory) {
+            PositionDecay decay = ((PositionDecay.Factory) scriptFactory).newDecay(script.getParams());
+            decayTable = new PositionDecayTable(decay, DECAY_TABLE_SIZE);
+            usesGroupSize = decay.usesGroupSize();
+        }
+        return new CompiledProfile(profile, scriptFactory, decayTable, usesGroupSize);
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        if (!event.metadataChanged()) {
+            return;
+        }
+        MixupProfilesMetadata metadata = MixupProfilesMetadata.fromState(event.state().metadata());
+        if (metadata.equals(currentMetadata)) {
+            return;
+        }
+
+        Map<String, CompiledProfile> oldProfiles = compiledProfiles;
+        Map<String, CompiledProfile> newProfiles = new HashMap<>();
+        for (Map.Entry<String, MixupProfile> entry : metadata.profiles().entrySet()) {
+            String name = entry.getKey();
+            MixupProfile profile = entry.getValue();
+            CompiledProfile oldProfile = oldProfiles.get(name);
+            if (oldProfile != null && oldProfile.profile().equals(profile)) {
+                newProfiles.put(name, oldProfile);
+                continue;
+            }
+            try {
+                newProfiles.put(name, compile(profile, scriptService));
+            } catch (Exception e) {
+                // keep serving the previous version of the profile
+                logger.warn(new ParameterizedMessage("failed to compile grouping mixup profile [{}]", name), e);
+                if (oldProfile != null) {
+                    newProfiles.put(name, oldProfile);
+                }
+            }
+        }
+        compiledProfiles = Collections.unmodifiableMap(newProfiles);
+        currentMetadata = metadata;
+    }
+}
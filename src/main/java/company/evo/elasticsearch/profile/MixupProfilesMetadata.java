@@ -0,0 +1,155 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.profile;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.AbstractNamedDiffable;
+import org.elasticsearch.cluster.NamedDiff;
+import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.elasticsearch.common.xcontent.XContentParserUtils.ensureExpectedToken;
+
+/**
+ * Grouping mixup profiles persisted in the cluster state.
+ */
+public class MixupProfilesMetadata extends AbstractNamedDiffable<Metadata.Custom> implements Metadata.Custom {
+    public static final String TYPE = "grouping_mixup_profiles";
+    public static final MixupProfilesMetadata EMPTY = new MixupProfilesMetadata(Collections.emptyMap());
+
+    private static final ParseField PROFILES_FIELD = new ParseField("profiles");
+
+    private final Map<String, MixupProfile> profiles;
+
+    public MixupProfilesMetadata(Map<String, MixupProfile> profiles) {
+        this.profiles = Collections.unmodifiableMap(profiles);
+    }
+
+    public MixupProfilesMetadata(StreamInput in) throws IOException {
+        this.profiles = Collections.unmodifiableMap(in.readMap(StreamInput::readString, MixupProfile::new));
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeMap(profiles, StreamOutput::writeString, (o, profile) -> profile.writeTo(o));
+    }
+
+    public static NamedDiff<Metadata.Custom> readDiffFrom(StreamInput in) throws IOException {
+        return readDiffFrom(Metadata.Custom.class, TYPE, in);
+    }
+
+    public static MixupProfilesMetadata fromState(Metadata metadata) {
+        MixupProfilesMetadata profiles = metadata.custom(TYPE);
+        return profiles == null ? EMPTY : profiles;
+    }
+
+    public Map<String, MixupProfile> profiles() {
+        return profiles;
+    }
+
+    public MixupProfilesMetadata withProfile(String name, MixupProfile profile) {
+        Map<String, MixupProfile> newProfiles = new HashMap<>(profiles);
+        newProfiles.put(name, profile);
+        return new MixupProfilesMetadata(newProfiles);
+    }
+
+    public MixupProfilesMetadata withoutProfile(String name) {
+        Map<String, MixupProfile> newProfiles = new HashMap<>(profiles);
+        newProfiles.remove(name);
+        return new MixupProfilesMetadata(newProfiles);
+    }
+
+    @Override
+    public String getWriteableName() {
+        return TYPE;
+    }
+
+    @Override
+    public Version getMinimalSupportedVersion() {
+        return Version.V_7_0_0;
+    }
+
+    @Override
+    public EnumSet<Metadata.XContentContext> context() {
+        return Metadata.ALL_CONTEXTS;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(PROFILES_FIELD.getPreferredName());
+        for (Map.Entry<String, MixupProfile> profile : new TreeMap<>(profiles).entrySet()) {
+            builder.field(profile.getKey(), profile.getValue());
+        }
+        builder.endObject();
+        return builder;
+    }
+
+    public static MixupProfilesMetadata fromXContent(XContentParser parser) throws IOException {
+        Map<String, MixupProfile> profiles = new HashMap<>();
+        XContentParser.Token token = parser.currentToken();
+        if (token == null) {
+            token = parser.nextToken();
+        }
+        ensureExpectedToken(XContentParser.Token.START_OBJECT, token, parser);
+        while ((token = parser.nextToken()) == XContentParser.Token.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            token = parser.nextToken();
+            if (PROFILES_FIELD.match(fieldName, parser.getDeprecationHandler())) {
+                ensureExpectedToken(XContentParser.Token.START_OBJECT, token, parser);
+                while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                    String name = parser.currentName();
+                    parser.nextToken();
+                    profiles.put(name, MixupProfile.fromXContent(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        ensureExpectedToken(XContentParser.Token.END_OBJECT, token, parser);
+        return new MixupProfilesMetadata(profiles);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return profiles.equals(((MixupProfilesMetadata) obj).profiles);
+    }
+
+    @Override
+    public int hashCode() {
+        return profiles.hashCode();
+    }
+}
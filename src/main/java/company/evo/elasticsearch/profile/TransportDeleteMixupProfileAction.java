@@ -0,0 +1,84 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.profile;
+
+import org.elasticsearch.ResourceNotFoundException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.master.AcknowledgedResponse;
+import org.elasticsearch.action.support.master.AcknowledgedTransportMasterNodeAction;
+import org.elasticsearch.cluster.AckedClusterStateUpdateTask;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.block.ClusterBlockException;
+import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+public class TransportDeleteMixupProfileAction
+        extends AcknowledgedTransportMasterNodeAction<DeleteMixupProfileAction.Request>
+{
+    @Inject
+    public TransportDeleteMixupProfileAction(TransportService transportService, ClusterService clusterService,
+                                             ThreadPool threadPool, ActionFilters actionFilters,
+                                             IndexNameExpressionResolver indexNameExpressionResolver) {
+        super(
+                DeleteMixupProfileAction.NAME, transportService, clusterService, threadPool, actionFilters,
+                DeleteMixupProfileAction.Request::new, indexNameExpressionResolver, ThreadPool.Names.SAME
+        );
+    }
+
+    @Override
+    protected void masterOperation(Task task, DeleteMixupProfileAction.Request request, ClusterState state,
+                                   ActionListener<AcknowledgedResponse> listener) {
+        clusterService.submitStateUpdateTask(
+                "delete-grouping-mixup-profile-" + request.name(),
+                new AckedClusterStateUpdateTask(request, listener) {
+                    @Override
+                    public ClusterState execute(ClusterState currentState) {
+                        MixupProfilesMetadata profiles = MixupProfilesMetadata.fromState(currentState.metadata());
+                        if (!profiles.profiles().containsKey(request.name())) {
+                            throw new ResourceNotFoundException(
+                                    "grouping mixup profile [{}] is missing", request.name()
+                            );
+                        }
+                        return ClusterState.builder(currentState)
+                                .metadata(
+                                        Metadata.builder(currentState.metadata())
+                                                .putCustom(
+                                                        MixupProfilesMetadata.TYPE,
+                                                        profiles.withoutProfile(request.name())
+                                                )
+                                )
+                                .build();
+                    }
+                }
+        );
+    }
+
+    @Override
+    protected ClusterBlockException checkBlock(DeleteMixupProfileAction.Request request, ClusterState state) {
+        return state.blocks().globalBlockedException(ClusterBlockLevel.METADATA_WRITE);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.profile;
+
+import org.elasticsearch.ResourceNotFoundException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.master.TransportMasterNodeReadAction;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.block.ClusterBlockException;
+import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.Collections;
+import java.util.Map;
+
+public class TransportGetMixupProfilesAction
+        extends TransportMasterNodeReadAction<GetMixupProfilesAction.Request, GetMixupProfilesAction.Response>
+{
+    @Inject
+    public TransportGetMixupProfilesAction(TransportService transportService, ClusterService clusterService,
+                                           ThreadPool threadPool, ActionFilters actionFilters,
+                                           IndexNameExpressionResolver indexNameExpressionResolver) {
+        super(
+                GetMixupProfilesAction.NAME, transportService, clusterService, threadPool, actionFilters,
+                GetMixupProfilesAction.Request::new, indexNameExpressionResolver,
+                GetMixupProfilesAction.Response::new, ThreadPool.Names.SAME
+        );
+    }
+
+    @Override
+    protected void masterOperation(Task task, GetMixupProfilesAction.Request request, ClusterState state,
+                                   ActionListener<GetMixupProfilesAction.Response> listener) {
+        Map<String, MixupProfile> profiles = MixupProfilesMetadata.fromState(state.metadata()).profiles();
+        if (request.name() == null) {
+            listener.onResponse(new GetMixupProfilesAction.Response(profiles));
+            return;
+        }
+        MixupProfile profile = profiles.get(request.name());
+        if (profile == null) {
+            listener.onFailure(
+                    new ResourceNotFoundException("grouping mixup profile [{}] is missing", request.name())
+            );
+            return;
+        }
+        listener.onResponse(
+                new GetMixupProfilesAction.Response(Collections.singletonMap(request.name(), profile))
+        );
+    }
+
+    @Override
+    protected ClusterBlockException checkBlock(GetMixupProfilesAction.Request request, ClusterState state) {
+        return state.blocks().globalBlockedException(ClusterBlockLevel.METADATA_READ);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.profile;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.master.AcknowledgedResponse;
+import org.elasticsearch.action.support.master.AcknowledgedTransportMasterNodeAction;
+import org.elasticsearch.cluster.AckedClusterStateUpdateTask;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.block.ClusterBlockException;
+import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+/**
+ * Stores a profile in the cluster state. Only the decline script and its use of group sizes
+ * are validated on the master: weight tables are node local files and group fields belong
+ * to indices, so they are resolved by every search and a profile that references a missing
+ * table or field fails searches that use it.
+ */
+public class TransportPutMixupProfileAction
+        extends AcknowledgedTransportMasterNodeAction<PutMixupProfileAction.Request>
+{
+    private final ScriptService scriptService;
+
+    @Inject
+    public TransportPutMixupProfileAction(TransportService transportService, ClusterService clusterService,
+                                          ThreadPool threadPool, ActionFilters actionFilters,
+                                          IndexNameExpressionResolver indexNameExpressionResolver,
+                                          ScriptService scriptService) {
+        super(
+                PutMixupProfileAction.NAME, transportService, clusterService, threadPool, actionFilters,
+                PutMixupProfileAction.Request::new, indexNameExpressionResolver, ThreadPool.Names.SAME
+        );
+        this.scriptService = scriptService;
+    }
+
+    @Override
+    protected void masterOperation(Task task, PutMixupProfileAction.Request request, ClusterState state,
+                                   ActionListener<AcknowledgedResponse> listener) {
+        // Fail before changing the cluster state if the script is invalid
+        MixupProfile profile = request.profile();
+        try {
+            MixupProfiles.CompiledProfile compiledProfile = MixupProfiles.compile(profile, scriptService);
+            // Group sizes are counted only by global ordinals which a grouping mode turns off
+            boolean usesGroupSizes = compiledProfile.usesGroupSize() || Boolean.TRUE.equals(profile.groupSizes());
+            if (usesGroupSizes && profile.groupingMode() != null) {
+                throw new IllegalArgumentException(
+                        "Grouping mixup profile [" + request.name() + "] uses group sizes " +
+                        "which are not available when [grouping_mode] is set"
+                );
+            }
+        } catch (Exception e) {
+            listener.onFailure(e);
+            return;
+        }
+
+        clusterService.submitStateUpdateTask(
+                "put-grouping-mixup-profile-" + request.name(),
+                new AckedClusterStateUpdateTask(request, listener) {
+                    @Override
+                    public ClusterState execute(ClusterState currentState) {
+                        MixupProfilesMetadata profiles = MixupProfilesMetadata.fromState(currentState.metadata());
+                        if (request.profile().equals(profiles.profiles().get(request.name()))) {
+                            return currentState;
+                        }
+                        return ClusterState.builder(currentState)
+                                .metadata(
+                                        Metadata.builder(currentState.metadata())
+                                                .putCustom(
+                                                        MixupProfilesMetadata.TYPE,
+                                                        profiles.withProfile(request.name(), request.profile())
+                                                )
+                                )
+                                .build();
+                    }
+                }
+        );
+    }
+
+    @Override
+    protected ClusterBlockException checkBlock(PutMixupProfileAction.Request request, ClusterState state) {
+        return state.blocks().globalBlockedException(ClusterBlockLevel.METADATA_WRITE);
+    }
+}
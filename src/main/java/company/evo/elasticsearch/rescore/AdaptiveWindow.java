@@ -0,0 +1,114 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ConstructingObjectParser;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Rescore window that starts from {@code min_size} hits and grows by the same number of hits
+ * until it contains {@code target_groups} distinct groups or reaches the rescorer's window size.
+ */
+public class AdaptiveWindow implements Writeable, ToXContentObject {
+    private static ParseField MIN_SIZE_FIELD = new ParseField("min_size");
+    private static ParseField TARGET_GROUPS_FIELD = new ParseField("target_groups");
+
+    private static final ConstructingObjectParser<AdaptiveWindow, Void> PARSER =
+            new ConstructingObjectParser<>(
+                    "adaptive_window",
+                    args -> new AdaptiveWindow((Integer) args[0], (Integer) args[1])
+            );
+    static {
+        PARSER.declareInt(ConstructingObjectParser.constructorArg(), MIN_SIZE_FIELD);
+        PARSER.declareInt(ConstructingObjectParser.constructorArg(), TARGET_GROUPS_FIELD);
+    }
+
+    private final int minSize;
+    private final int targetGroups;
+
+    public AdaptiveWindow(int minSize, int targetGroups) {
+        if (minSize <= 0) {
+            throw new IllegalArgumentException("[" + MIN_SIZE_FIELD.getPreferredName() + "] must be positive");
+        }
+        if (targetGroups <= 0) {
+            throw new IllegalArgumentException("[" + TARGET_GROUPS_FIELD.getPreferredName() + "] must be positive");
+        }
+        this.minSize = minSize;
+        this.targetGroups = targetGroups;
+    }
+
+    public AdaptiveWindow(StreamInput in) throws IOException {
+        this.minSize = in.readVInt();
+        this.targetGroups = in.readVInt();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVInt(minSize);
+        out.writeVInt(targetGroups);
+    }
+
+    public int minSize() {
+        return minSize;
+    }
+
+    public int targetGroups() {
+        return targetGroups;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        builder.field(MIN_SIZE_FIELD.getPreferredName(), minSize);
+        builder.field(TARGET_GROUPS_FIELD.getPreferredName(), targetGroups);
+        builder.endObject();
+        return builder;
+    }
+
+    public static AdaptiveWindow fromXContent(XContentParser parser) {
+        return PARSER.apply(parser, null);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        AdaptiveWindow other = (AdaptiveWindow) obj;
+        return minSize == other.minSize && targetGroups == other.targetGroups;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minSize, targetGroups);
+    }
+}
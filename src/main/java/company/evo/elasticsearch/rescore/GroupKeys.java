@@ -0,0 +1,35 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.hash.MurmurHash3;
+
+/**
+ * 64-bit keys of group values. It is the same hash that {@code murmur3} field of
+ * the mapper-murmur3 plugin uses: the lower half of the 128-bit MurmurHash3 with zero seed.
+ */
+public final class GroupKeys {
+    private GroupKeys() {}
+
+    public static long hash(BytesRef value, MurmurHash3.Hash128 spare) {
+        return MurmurHash3.hash128(value.bytes, value.offset, value.length, 0, spare).h1;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import org.apache.lucene.index.IndexReader;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Group sizes counted by {@link GroupingMixupRescorer}, kept per top level reader and group field
+ * until the reader is closed. Global ordinals identify groups inside a reader, so a group is counted
+ * once per refresh instead of once per request. At most {@link #MAX_GROUPS_PER_FIELD} groups are kept
+ * for a field of a reader, other groups are counted by every request that needs them.
+ */
+final class GroupSizesCache {
+    // bounds memory to about a megabyte and a half per field of a reader
+    static final int MAX_GROUPS_PER_FIELD = 16384;
+
+    private static final Map<IndexReader.CacheKey, Map<String, FieldSizes>> readers = new ConcurrentHashMap<>();
+
+    private GroupSizesCache() {}
+
+    /**
+     * Sizes of the groups of the field by global ordinals of the reader.
+     */
+    static final class FieldSizes {
+        private final Map<Long, Integer> sizes = new ConcurrentHashMap<>();
+
+        /**
+         * Returns the size of the group or {@code -1} if it was not counted yet.
+         */
+        int get(long ord) {
+            Integer size = sizes.get(ord);
+            return size == null ? -1 : size;
+        }
+
+        void put(long ord, int size) {
+            if (sizes.size() < MAX_GROUPS_PER_FIELD) {
+                sizes.put(ord, size);
+            }
+        }
+    }
+
+    /**
+     * Returns cached sizes for the field or {@code null} if the reader cannot be cached.
+     */
+    static FieldSizes get(IndexReader reader, String field) {
+        IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
+        if (cacheHelper == null) {
+            return null;
+        }
+        Map<String, FieldSizes> fields = readers.computeIfAbsent(cacheHelper.getKey(), key -> {
+            cacheHelper.addClosedListener(readers::remove);
+            return new ConcurrentHashMap<>();
+        });
+        return fields.computeIfAbsent(field, f -> new FieldSizes());
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+
+/**
+ * Assigns dense ids to the groups of a rescore window.
+ */
+interface GroupTable {
+    int size();
+
+    /**
+     * Number of bytes that are not proportional to the number of hits,
+     * for instance group values that grow with their length.
+     */
+    long bytesUsed();
+
+    /**
+     * Returns 64-bit key of the group, see {@link GroupKeys}.
+     */
+    long key(int id) throws IOException;
+
+    /**
+     * Returns a human readable label of the group.
+     * The returned value can be overwritten by the next call.
+     */
+    BytesRef label(int id) throws IOException;
+
+    void clear();
+
+    /**
+     * Table that groups hits by the values of the group field.
+     */
+    interface Values extends GroupTable {
+        /**
+         * Returns an id of the group adding it into the table if it is not there yet.
+         */
+        int add(BytesRef value);
+    }
+}
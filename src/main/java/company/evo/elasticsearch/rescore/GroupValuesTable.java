@@ -0,0 +1,149 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+import org.elasticsearch.common.hash.MurmurHash3;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing table that assigns dense ids to group values.
+ * Values are copied into a single byte buffer. All the buffers are kept
+ * after {@link #clear()} so the table can be reused without allocations.
+ */
+final class GroupValuesTable implements GroupTable.Values {
+    private static final int EMPTY = -1;
+    private static final float LOAD_FACTOR = 0.5F;
+
+    private byte[] bytes = new byte[256];
+    private int bytesLength = 0;
+    // offsets of the values in the bytes buffer, value with id i takes [offsets[i], offsets[i + 1])
+    private int[] offsets = new int[17];
+    private int[] hashes = new int[16];
+    private int[] slots;
+    private int mask;
+    private int size = 0;
+
+    private final BytesRef spare = new BytesRef();
+    private final MurmurHash3.Hash128 hash128 = new MurmurHash3.Hash128();
+
+    GroupValuesTable() {
+        this(16);
+    }
+
+    GroupValuesTable(int expectedSize) {
+        int capacity = Math.max(16, Integer.highestOneBit(Math.max(1, (int) (expectedSize / LOAD_FACTOR))) << 1);
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        mask = capacity - 1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long bytesUsed() {
+        return bytesLength;
+    }
+
+    /**
+     * Size of the buffer for group values.
+     */
+    int bytesCapacity() {
+        return bytes.length;
+    }
+
+    @Override
+    public int add(BytesRef value) {
+        int hash = StringHelper.murmurhash3_x86_32(value, StringHelper.GOOD_FAST_HASH_SEED);
+        int slot = hash & mask;
+        while (true) {
+            int id = slots[slot];
+            if (id == EMPTY) {
+                break;
+            }
+            if (hashes[id] == hash && equals(id, value)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = size++;
+        hashes = ArrayUtil.grow(hashes, size);
+        offsets = ArrayUtil.grow(offsets, size + 1);
+        bytes = ArrayUtil.grow(bytes, bytesLength + value.length);
+        System.arraycopy(value.bytes, value.offset, bytes, bytesLength, value.length);
+        bytesLength += value.length;
+        offsets[size] = bytesLength;
+        hashes[id] = hash;
+        slots[slot] = id;
+        if (size > slots.length * LOAD_FACTOR) {
+            rehash();
+        }
+        return id;
+    }
+
+    @Override
+    public long key(int id) {
+        return GroupKeys.hash(label(id), hash128);
+    }
+
+    @Override
+    public BytesRef label(int id) {
+        spare.bytes = bytes;
+        spare.offset = offsets[id];
+        spare.length = offsets[id + 1] - offsets[id];
+        return spare;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(slots, EMPTY);
+        }
+        size = 0;
+        bytesLength = 0;
+    }
+
+    private boolean equals(int id, BytesRef value) {
+        return Arrays.equals(
+                bytes, offsets[id], offsets[id + 1],
+                value.bytes, value.offset, value.offset + value.length
+        );
+    }
+
+    private void rehash() {
+        slots = new int[slots.length << 1];
+        Arrays.fill(slots, EMPTY);
+        mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id;
+        }
+    }
+}
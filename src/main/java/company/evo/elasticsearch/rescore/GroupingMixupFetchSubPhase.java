@@ -0,0 +1,86 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.elasticsearch.common.document.DocumentField;
+import org.elasticsearch.search.fetch.FetchContext;
+import org.elasticsearch.search.fetch.FetchSubPhase;
+import org.elasticsearch.search.fetch.FetchSubPhaseProcessor;
+import org.elasticsearch.search.rescore.RescoreContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import static java.util.Collections.singletonList;
+
+/**
+ * Adds position inside a group and decline factor computed by {@link GroupingMixupRescorer}
+ * to the fields of rescored hits. Enabled by the {@code fetch_fields} rescorer option.
+ */
+public class GroupingMixupFetchSubPhase implements FetchSubPhase {
+    public static final String POSITION_FIELD_NAME = "_grouping_mixup_pos";
+    public static final String FACTOR_FIELD_NAME = "_grouping_mixup_factor";
+
+    @Override
+    public FetchSubPhaseProcessor getProcessor(FetchContext fetchContext) {
+        List<RescoreContext> rescoreContexts = fetchContext.rescore();
+        if (rescoreContexts == null) {
+            return null;
+        }
+        final List<RescoredHits> rescoredHits = new ArrayList<>();
+        for (RescoreContext rescoreContext : rescoreContexts) {
+            if (rescoreContext instanceof GroupingMixupRescorer.Context) {
+                GroupingMixupRescorer.Context ctx = (GroupingMixupRescorer.Context) rescoreContext;
+                if (ctx.fetchFields() && ctx.rescoredHits() != null) {
+                    rescoredHits.add(ctx.rescoredHits());
+                }
+            }
+        }
+        if (rescoredHits.isEmpty()) {
+            return null;
+        }
+
+        return new FetchSubPhaseProcessor() {
+            @Override
+            public void setNextReader(LeafReaderContext readerContext) {}
+
+            @Override
+            public void process(HitContext hitContext) {
+                int topLevelDocId = hitContext.readerContext().docBase + hitContext.docId();
+                // The last rescorer has the final word when there are several of them
+                for (int i = rescoredHits.size() - 1; i >= 0; i--) {
+                    RescoredHits hits = rescoredHits.get(i);
+                    int hitIx = hits.find(topLevelDocId);
+                    if (hitIx >= 0) {
+                        hitContext.hit().setDocumentField(
+                                POSITION_FIELD_NAME,
+                                new DocumentField(POSITION_FIELD_NAME, singletonList(hits.position(hitIx)))
+                        );
+                        hitContext.hit().setDocumentField(
+                                FACTOR_FIELD_NAME,
+                                new DocumentField(FACTOR_FIELD_NAME, singletonList(hits.factor(hitIx)))
+                        );
+                        return;
+                    }
+                }
+            }
+        };
+    }
+}
@@ -21,14 +21,23 @@ package company.evo.elasticsearch.rescore;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.fielddata.IndexOrdinalsFieldData;
 import org.elasticsearch.index.fielddata.SortedBinaryDocValues;
 import org.elasticsearch.script.ScoreScript;
 import org.elasticsearch.search.rescore.RescoreContext;
@@ -38,16 +47,14 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
-import java.util.HashMap;
 import java.util.Map;
 
 public class GroupingMixupRescorer implements Rescorer {
     public static final String POSITION_PARAMETER_NAME = "_pos";
+    public static final String GROUP_SIZE_PARAMETER_NAME = "_group_size";
 
     static final GroupingMixupRescorer INSTANCE = new GroupingMixupRescorer();
 
-    private static final Comparator<ScoreDoc> DOC_COMPARATOR = Comparator.comparingInt((d) -> d.doc);
-
     private static final Comparator<ScoreDoc> SCORE_DOC_COMPARATOR = (a, b) -> {
         if (a.score > b.score) {
             return -1;
@@ -58,20 +65,9 @@ public class GroupingMixupRescorer implements Rescorer {
         return a.doc - b.doc;
     };
 
-    private final Logger logger = LogManager.getLogger(getClass());
-
-    private static class HitScriptData {
-        final int docId;
-        final BytesRef groupValue;
-        final ScoreScript script;
-        int position = 0;
+    static final String BREAKER_LABEL = "<grouping_mixup>";
 
-        HitScriptData(int docId, BytesRef groupValue, ScoreScript script) {
-            this.docId = docId;
-            this.groupValue = groupValue;
-            this.script = script;
-        }
-    }
+    private final Logger logger = LogManager.getLogger(getClass());
 
     @Override
     public TopDocs rescore(TopDocs topDocs, IndexSearcher searcher, RescoreContext rescoreContext)
@@ -90,116 +86,493 @@ public class GroupingMixupRescorer implements Rescorer {
             return topDocs;
         }
 
-        // Sort by document ordinal to fetch group values
-        Arrays.sort(hits, 0, windowSize, DOC_COMPARATOR);
+        final RescoreScratch scratch = RescoreScratch.acquire(windowSize);
+        long reservedBytes = 0;
+        try {
+            // Account memory of the working buffers
+            long scratchBytes = scratch.ramBytesUsed();
+            rescoreCtx.breaker.addEstimateBytesAndMaybeBreak(scratchBytes, BREAKER_LABEL);
+            reservedBytes += scratchBytes;
+
+            final long[] docKeys = scratch.docKeys;
+            final int[] groupIds = scratch.groupIds;
+            final int[] positions = scratch.positions;
+            final float[] factors = scratch.factors;
+
+            // Positions are assigned in the order of scores
+            Arrays.sort(hits, 0, windowSize, SCORE_DOC_COMPARATOR);
+
+            List<LeafReaderContext> readerContexts = searcher.getIndexReader().leaves();
+
+            // Choose the cheapest way to count groups: fields with prebuilt global ordinals are grouped
+            // by ordinals using a dense array for low cardinality fields, other fields by their values
+            final IndexOrdinalsFieldData globalOrdinals = globalOrdinals(rescoreCtx, searcher);
+            final OrdinalGroupTable ordinalGroups;
+            final GroupTable.Values valueGroups;
+            final GroupTable groupTable;
+            if (globalOrdinals != null) {
+                long valueCount = globalOrdinals.load(readerContexts.get(0)).getOrdinalsValues().getValueCount();
+                ordinalGroups = scratch.ordinalGroupTable();
+                boolean dense = ordinalGroups.reset(valueCount, windowSize);
+                valueGroups = null;
+                groupTable = ordinalGroups;
+                logger.debug(
+                        "grouping [{}] hits by [{}] ordinals using {} table",
+                        windowSize, valueCount, dense ? "dense" : "hash"
+                );
+            } else {
+                ordinalGroups = null;
+                valueGroups = scratch.groupTable(rescoreCtx.groupingMode);
+                groupTable = valueGroups;
+                logger.debug(
+                        "grouping [{}] hits by values using [{}] grouping mode", windowSize, rescoreCtx.groupingMode
+                );
+            }
+            final AdaptiveWindow adaptiveWindow = rescoreCtx.adaptiveWindow;
+            final int chunkSize = adaptiveWindow == null ? windowSize : adaptiveWindow.minSize();
+            final int targetGroups = adaptiveWindow == null ? Integer.MAX_VALUE : adaptiveWindow.targetGroups();
+
+            // Read group values chunk by chunk until we have enough groups.
+            // Hits of a chunk are sorted by document ordinal to fetch group values
+            int numRescored = 0;
+            while (numRescored < windowSize && groupTable.size() < targetGroups) {
+                int chunkStart = numRescored;
+                numRescored = Math.min(windowSize, numRescored + chunkSize);
+                for (int hitIx = chunkStart; hitIx < numRescored; hitIx++) {
+                    docKeys[hitIx] = docKey(hits[hitIx].doc, hitIx);
+                }
+                Arrays.sort(docKeys, chunkStart, numRescored);
+                if (ordinalGroups != null) {
+                    readOrdinalGroups(
+                            docKeys, chunkStart, numRescored, readerContexts, globalOrdinals, rescoreCtx.maxGroups,
+                            ordinalGroups, groupIds
+                    );
+                } else {
+                    readGroups(docKeys, chunkStart, numRescored, readerContexts, rescoreCtx, valueGroups, groupIds);
+                }
+            }
+            if (numRescored < windowSize) {
+                logger.trace(
+                        "adaptive window stopped at [{}] hits of [{}] with [{}] groups",
+                        numRescored, windowSize, groupTable.size()
+                );
+                windowSize = numRescored;
+            }
+            if (chunkSize < windowSize) {
+                Arrays.sort(docKeys, 0, windowSize);
+            }
+            final int[] groupCounters = scratch.groupCounters(groupTable.size());
+            final float[] groupWeights = scratch.groupWeights(groupTable.size());
+            final int[] groupSizes = rescoreCtx.groupSizes ? scratch.groupSizes(groupTable.size()) : null;
+            // Account group values and per group arrays
+            long groupBytes = groupTable.bytesUsed() + scratch.ramBytesUsed() - scratchBytes;
+            rescoreCtx.breaker.addEstimateBytesAndMaybeBreak(groupBytes, BREAKER_LABEL);
+            reservedBytes += groupBytes;
+
+            // Hits are sorted by score so a position is just a number of the group's hits seen before
+            for (int hitIx = 0; hitIx < windowSize; hitIx++) {
+                positions[hitIx] = groupCounters[groupIds[hitIx]]++;
+            }
+
+            if (groupSizes != null) {
+                if (ordinalGroups == null) {
+                    throw new IllegalStateException("Group sizes can be counted only by global ordinals");
+                }
+                countGroupDocs(
+                        ordinalGroups, globalOrdinals.getFieldName(), searcher.getIndexReader(), groupSizes
+                );
+            }
+
+            // Groups with lower weights decline slower
+            if (rescoreCtx.groupWeights != null) {
+                for (int groupId = 0; groupId < groupTable.size(); groupId++) {
+                    groupWeights[groupId] = rescoreCtx.groupWeights.get(groupTable.key(groupId), 1.0F);
+                }
+            }
+
+            // Iterate in document order again to be able to execute script.
+            // `setDocument` must be called with increased document ordinals!!!
+            int currentReaderIx = -1;
+            int currentReaderEndDoc = 0;
+            LeafReaderContext currentReaderContext = null;
+            ScoreScript declineScript = null;
+            // Values are recorded only when they are requested by explain or fetch fields
+            // Recorded hits are owned by the context and released with the search context
+            final RescoredHits rescoredHits = rescoreCtx.recordHits
+                    ? new RescoredHits(windowSize, rescoreCtx.breaker)
+                    : null;
+            rescoreCtx.rescoredHits(rescoredHits);
+            if (rescoredHits != null) {
+                rescoredHits.setGroups(groupTable, groupSizes);
+            }
+            for (int i = 0; i < windowSize; i++) {
+                int doc = keyDoc(docKeys[i]);
+                int hitIx = keyHitIx(docKeys[i]);
 
-        List<LeafReaderContext> readerContexts = searcher.getIndexReader().leaves();
+                if (doc >= currentReaderEndDoc) {
+                    while (doc >= currentReaderEndDoc) {
+                        currentReaderIx++;
+                        currentReaderContext = readerContexts.get(currentReaderIx);
+                        currentReaderEndDoc = currentReaderContext.docBase + currentReaderContext.reader().maxDoc();
+                    }
+                    if (rescoreCtx.declineScript != null) {
+                        declineScript = rescoreCtx.declineScript.newInstance(currentReaderContext);
+                    }
+                }
+
+                // Calculate new score
+                float groupWeight = groupWeights[groupIds[hitIx]];
+                double groupSize = groupSizes == null ? 0.0 : groupSizes[groupIds[hitIx]];
+                if (declineScript != null) {
+                    declineScript.setDocument(doc - currentReaderContext.docBase);
+                    Map<String, Object> scriptParams = declineScript.getParams();
+                    scriptParams.put(POSITION_PARAMETER_NAME, (double) (positions[hitIx] * groupWeight));
+                    if (groupSizes != null) {
+                        scriptParams.put(GROUP_SIZE_PARAMETER_NAME, groupSize);
+                    }
+                    factors[hitIx] = (float) declineScript.execute(null);
+                } else {
+                    factors[hitIx] = rescoreCtx.decayTable.factor(positions[hitIx], groupWeight, groupSize);
+                }
+                hits[hitIx].score = hits[hitIx].score * factors[hitIx];
+
+                // Remember computed values so we can explain them later
+                if (rescoredHits != null) {
+                    rescoredHits.add(doc, groupIds[hitIx], positions[hitIx], groupWeight, factors[hitIx]);
+                }
+            }
+
+            // Finally sort hits by new scores
+            Arrays.sort(hits, 0, windowSize, SCORE_DOC_COMPARATOR);
+            float minRescoredScore = hits[windowSize - 1].score;
+
+            // Decrease scores for hits that were not rescored.
+            // We must do that to satisfy elasticsearch's assertion
+            if (hits.length > windowSize) {
+                float maxNonRescoredScore = hits[windowSize].score;
+                float deltaScore = maxNonRescoredScore - minRescoredScore;
+                for (int i = windowSize; i < hits.length; i++) {
+                    ScoreDoc hit = hits[i];
+                    hit.score -= deltaScore;
+                }
+                if (rescoredHits != null) {
+                    rescoredHits.setNonRescoredDelta(deltaScore);
+                }
+            }
+
+            return new TopDocs(topDocs.totalHits, hits);
+        } finally {
+            scratch.release();
+            rescoreCtx.breaker.addWithoutBreaking(-reservedBytes);
+        }
+    }
+
+    private static void readGroups(long[] docKeys, int from, int to, List<LeafReaderContext> readerContexts,
+                                   Context rescoreCtx, GroupTable.Values groupTable, int[] groupIds)
+            throws IOException
+    {
         int currentReaderIx = -1;
         int currentReaderEndDoc = 0;
         LeafReaderContext currentReaderContext = null;
         SortedBinaryDocValues groupValues = null;
-        ScoreScript declineScript = null;
-
-        BytesRefBuilder groupValueBuilder = new BytesRefBuilder();
-        final Map<Integer, HitScriptData> hitToScriptData = new HashMap<>();
+        boolean sortedByGroup = false;
+        // group of the previous hit when the segment is sorted by the group field
+        final BytesRefBuilder runGroupValue = new BytesRefBuilder();
+        int runGroupId = -1;
 
-        for (int hitIx = 0; hitIx < windowSize; hitIx++) {
-            ScoreDoc hit = hits[hitIx];
-            LeafReaderContext prevReaderContext = currentReaderContext;
+        final BytesRef missingGroupValue = new BytesRef();
+        final int maxGroups = rescoreCtx.maxGroups;
+        final String groupField = rescoreCtx.groupingField.getFieldName();
+        for (int i = from; i < to; i++) {
+            int doc = keyDoc(docKeys[i]);
+            int hitIx = keyHitIx(docKeys[i]);
 
             // find segment that contains current document
-            while (hit.doc >= currentReaderEndDoc) {
-                currentReaderIx++;
-                currentReaderContext = readerContexts.get(currentReaderIx);
-                currentReaderEndDoc = currentReaderContext.docBase + currentReaderContext.reader().maxDoc();
-            }
-
-            int docId = hit.doc - currentReaderContext.docBase;
-            if (currentReaderContext != prevReaderContext) {
+            if (doc >= currentReaderEndDoc) {
+                while (doc >= currentReaderEndDoc) {
+                    currentReaderIx++;
+                    currentReaderContext = readerContexts.get(currentReaderIx);
+                    currentReaderEndDoc = currentReaderContext.docBase + currentReaderContext.reader().maxDoc();
+                }
                 groupValues = rescoreCtx.groupingField
                         .load(currentReaderContext)
                         .getBytesValues();
-                declineScript = rescoreCtx.declineScript.newInstance(currentReaderContext);
+                sortedByGroup = isSortedByGroup(currentReaderContext, groupField);
+                runGroupId = -1;
             }
-            if (groupValues.advanceExact(docId)) {
-                groupValueBuilder.copyBytes(groupValues.nextValue());
-            } else {
-                groupValueBuilder.clear();
+
+            int docId = doc - currentReaderContext.docBase;
+            BytesRef groupValue = groupValues.advanceExact(docId) ? groupValues.nextValue() : missingGroupValue;
+            if (sortedByGroup) {
+                // Hits of a group follow each other so only the first hit of a run is looked up
+                if (runGroupId < 0 || !runGroupValue.get().bytesEquals(groupValue)) {
+                    runGroupId = groupTable.add(groupValue);
+                    runGroupValue.copyBytes(groupValue);
+                    checkMaxGroups(groupTable, maxGroups);
+                }
+                groupIds[hitIx] = runGroupId;
+                continue;
             }
-            hitToScriptData.put(
-                    hit.doc,
-                    new HitScriptData(docId, groupValueBuilder.toBytesRef(), declineScript)
-            );
+            groupIds[hitIx] = groupTable.add(groupValue);
+            checkMaxGroups(groupTable, maxGroups);
         }
+    }
 
-        // Sort by group value
-        Arrays.sort(hits, 0, windowSize, (a, b) -> {
-            int cmp = hitToScriptData.get(a.doc).groupValue.compareTo(hitToScriptData.get(b.doc).groupValue);
-            if (cmp == 0) {
-                return SCORE_DOC_COMPARATOR.compare(a, b);
-            }
-            return cmp;
-        });
+    private static void readOrdinalGroups(long[] docKeys, int from, int to, List<LeafReaderContext> readerContexts,
+                                          IndexOrdinalsFieldData globalOrdinals, int maxGroups,
+                                          OrdinalGroupTable groupTable, int[] groupIds)
+            throws IOException
+    {
+        int currentReaderIx = -1;
+        int currentReaderEndDoc = 0;
+        LeafReaderContext currentReaderContext = null;
+        SortedSetDocValues groupOrds = null;
+        boolean sortedByGroup = false;
+        // group of the previous hit when the segment is sorted by the group field
+        long runGroupOrd = OrdinalGroupTable.MISSING_ORD;
+        int runGroupId = -1;
+
+        final String groupField = globalOrdinals.getFieldName();
+        for (int i = from; i < to; i++) {
+            int doc = keyDoc(docKeys[i]);
+            int hitIx = keyHitIx(docKeys[i]);
 
-        final Map<BytesRef, Integer> groupPositions = new HashMap<>();
+            // find segment that contains current document
+            if (doc >= currentReaderEndDoc) {
+                while (doc >= currentReaderEndDoc) {
+                    currentReaderIx++;
+                    currentReaderContext = readerContexts.get(currentReaderIx);
+                    currentReaderEndDoc = currentReaderContext.docBase + currentReaderContext.reader().maxDoc();
+                }
+                groupOrds = globalOrdinals.load(currentReaderContext).getOrdinalsValues();
+                groupTable.lookup(groupOrds);
+                sortedByGroup = isSortedByGroup(currentReaderContext, groupField);
+                runGroupId = -1;
+            }
 
-        for (int hitIx = 0; hitIx < windowSize; hitIx++) {
-            ScoreDoc hit = hits[hitIx];
-            hitToScriptData.get(hit.doc).position = groupPositions.compute(hitToScriptData.get(hit.doc).groupValue, (k, curPos) -> {
-                if (curPos == null) {
-                    return 0;
+            int docId = doc - currentReaderContext.docBase;
+            long groupOrd = groupOrds.advanceExact(docId) ? groupOrds.nextOrd() : OrdinalGroupTable.MISSING_ORD;
+            if (sortedByGroup) {
+                if (runGroupId < 0 || runGroupOrd != groupOrd) {
+                    runGroupId = groupTable.add(groupOrd);
+                    runGroupOrd = groupOrd;
+                    checkMaxGroups(groupTable, maxGroups);
                 }
-                return ++curPos;
-            });
+                groupIds[hitIx] = runGroupId;
+                continue;
+            }
+            groupIds[hitIx] = groupTable.add(groupOrd);
+            checkMaxGroups(groupTable, maxGroups);
         }
+    }
 
-        // Sort by document ordinal again to be able to execute script.
-        // `setDocument` must be called with increased document ordinals!!!
-        Arrays.sort(hits, 0, windowSize, DOC_COMPARATOR);
+    /**
+     * Counts documents that have the group value in every segment. This is the number of documents
+     * of the group in the shard, not the number of matching ones, and it includes deleted documents
+     * until their segments are merged. Hits without a value get zero.
+     * Counting takes a term lookup per group and segment, so counted sizes are cached per reader
+     * and only groups that were not seen since the last refresh are looked up.
+     */
+    private static void countGroupDocs(OrdinalGroupTable groupTable, String groupField, IndexReader reader,
+                                       int[] groupSizes)
+            throws IOException
+    {
+        final GroupSizesCache.FieldSizes cachedSizes = GroupSizesCache.get(reader, groupField);
+        final int[] uncountedGroups = new int[groupTable.size()];
+        int numUncounted = 0;
+        for (int groupId = 0; groupId < groupTable.size(); groupId++) {
+            long ord = groupTable.ord(groupId);
+            int size = ord == OrdinalGroupTable.MISSING_ORD || cachedSizes == null ? -1 : cachedSizes.get(ord);
+            if (ord != OrdinalGroupTable.MISSING_ORD && size < 0) {
+                uncountedGroups[numUncounted++] = groupId;
+            }
+            groupSizes[groupId] = Math.max(size, 0);
+        }
+        if (numUncounted == 0) {
+            return;
+        }
 
-        for (int hitIx = 0; hitIx < windowSize; hitIx++) {
-            ScoreDoc hit = hits[hitIx];
-            // Calculate new score
-            HitScriptData hitScriptData = hitToScriptData.get(hit.doc);
-            hitScriptData.script.setDocument(hitScriptData.docId);
-            Map<String, Object> scriptParams = hitScriptData.script.getParams();
-            scriptParams.put(POSITION_PARAMETER_NAME, (double) hitScriptData.position);
-            hit.score = hit.score * (float) hitScriptData.script.execute(null);
+        for (LeafReaderContext readerContext : reader.leaves()) {
+            Terms terms = readerContext.reader().terms(groupField);
+            if (terms == null) {
+                continue;
+            }
+            TermsEnum termsEnum = terms.iterator();
+            for (int i = 0; i < numUncounted; i++) {
+                int groupId = uncountedGroups[i];
+                if (termsEnum.seekExact(groupTable.label(groupId))) {
+                    groupSizes[groupId] += termsEnum.docFreq();
+                }
+            }
+        }
+        if (cachedSizes != null) {
+            for (int i = 0; i < numUncounted; i++) {
+                int groupId = uncountedGroups[i];
+                cachedSizes.put(groupTable.ord(groupId), groupSizes[groupId]);
+            }
         }
+    }
 
-        // Finally sort hits by new scores
-        Arrays.sort(hits, 0, windowSize, SCORE_DOC_COMPARATOR);
-        float minRescoredScore = hits[windowSize - 1].score;
+    /**
+     * Checks if the index sort of the segment starts with the group field.
+     * Then documents of a group are contiguous and so are the hits iterated in document order.
+     */
+    private static boolean isSortedByGroup(LeafReaderContext readerContext, String groupField) {
+        Sort indexSort = readerContext.reader().getMetaData().getSort();
+        if (indexSort == null) {
+            return false;
+        }
+        SortField[] sortFields = indexSort.getSort();
+        return sortFields.length > 0 && groupField.equals(sortFields[0].getField());
+    }
 
-        // Decrease scores for hits that were not rescored.
-        // We must do that to satisfy elasticsearch's assertion
-        if (hits.length > windowSize) {
-            float maxNonRescoredScore = hits[windowSize].score;
-            float deltaScore = maxNonRescoredScore - minRescoredScore;
-            for (int i = windowSize; i < hits.length; i++) {
-                ScoreDoc hit = hits[i];
-                hit.score -= deltaScore;
-            }
+    private static void checkMaxGroups(GroupTable groupTable, int maxGroups) {
+        if (groupTable.size() > maxGroups) {
+            throw new IllegalArgumentException(
+                    "Number of groups in the rescore window exceeds [" + maxGroups + "]. " +
+                    "This limit can be set by changing the [" +
+                    GroupingMixupSettings.MAX_GROUPS.getKey() + "] cluster level setting."
+            );
+        }
+    }
+
+    /**
+     * Returns global ordinals of the group field or {@code null} if hits should be grouped by values.
+     */
+    private static IndexOrdinalsFieldData globalOrdinals(Context rescoreCtx, IndexSearcher searcher) {
+        if (rescoreCtx.globalOrdinals && searcher.getIndexReader() instanceof DirectoryReader) {
+            return ((IndexOrdinalsFieldData) rescoreCtx.groupingField)
+                    .loadGlobal((DirectoryReader) searcher.getIndexReader());
         }
+        return null;
+    }
+
+    private static long docKey(int doc, int hitIx) {
+        return ((long) doc << 32) | hitIx;
+    }
+
+    private static int keyDoc(long key) {
+        return (int) (key >>> 32);
+    }
 
-        return new TopDocs(topDocs.totalHits, hits);
+    private static int keyHitIx(long key) {
+        return (int) key;
     }
 
     @Override
     public Explanation explain(int topLevelDocId, IndexSearcher searcher, RescoreContext rescoreContext,
                                Explanation sourceExplanation) {
-        // We cannot explain new scores because we only have single document at this point
-        return sourceExplanation;
+        final Context rescoreCtx = (Context) rescoreContext;
+        final RescoredHits rescoredHits = rescoreCtx.rescoredHits();
+        if (rescoredHits == null) {
+            if (rescoreCtx.getWindowSize() <= 0) {
+                return sourceExplanation;
+            }
+            // Values are passed to the fetch phase only inside a single search request
+            return Explanation.match(
+                    sourceExplanation.getValue(),
+                    "grouping mixup values are not available for scroll and point in time searches, " +
+                            "the hit score can differ",
+                    sourceExplanation
+            );
+        }
+
+        int hitIx = rescoredHits.find(topLevelDocId);
+        if (hitIx < 0) {
+            float delta = rescoredHits.nonRescoredDelta();
+            if (delta == 0.0F) {
+                return sourceExplanation;
+            }
+            return Explanation.match(
+                    sourceExplanation.getValue().floatValue() - delta,
+                    "sum of:",
+                    sourceExplanation,
+                    Explanation.match(-delta, "shift below the rescore window")
+            );
+        }
+
+        BytesRef groupLabel = rescoredHits.groupLabel(hitIx, new BytesRefBuilder());
+        int position = rescoredHits.position(hitIx);
+        float weight = rescoredHits.weight(hitIx);
+        float factor = rescoredHits.factor(hitIx);
+        String sizeDescription = rescoredHits.hasGroupSizes()
+                ? " of size [" + rescoredHits.groupSize(hitIx) + "]"
+                : "";
+        String weightDescription = weight == 1.0F ? "" : " with weight [" + weight + "]";
+        return Explanation.match(
+                sourceExplanation.getValue().floatValue() * factor,
+                "grouping mixup, product of:",
+                sourceExplanation,
+                Explanation.match(
+                        factor,
+                        "decline factor for position [" + position + "] in group [" + groupLabel.utf8ToString() + "]" +
+                                sizeDescription + weightDescription
+                )
+        );
     }
 
     static class Context extends RescoreContext {
         private IndexFieldData<?> groupingField;
         private final ScoreScript.LeafFactory declineScript;
+        private final PositionDecayTable decayTable;
+        private final AdaptiveWindow adaptiveWindow;
+        private final GroupingMode groupingMode;
+        private final boolean globalOrdinals;
+        private final boolean groupSizes;
+        private final boolean fetchFields;
+        private final WeightTable groupWeights;
+        private final CircuitBreaker breaker;
+        private final int maxGroups;
+        private boolean recordHits = false;
+        private RescoredHits rescoredHits;
 
-        Context(int windowSize, IndexFieldData<?> groupingField, ScoreScript.LeafFactory declineScript) {
+        Context(int windowSize, AdaptiveWindow adaptiveWindow,
+                IndexFieldData<?> groupingField, GroupingMode groupingMode, boolean globalOrdinals, boolean groupSizes,
+                ScoreScript.LeafFactory declineScript, PositionDecayTable decayTable,
+                boolean fetchFields, WeightTable groupWeights,
+                CircuitBreaker breaker, int maxGroups) {
             super(windowSize, GroupingMixupRescorer.INSTANCE);
+            this.adaptiveWindow = adaptiveWindow;
             this.groupingField = groupingField;
+            this.groupingMode = groupingMode;
+            this.globalOrdinals = globalOrdinals;
+            this.groupSizes = groupSizes;
             this.declineScript = declineScript;
+            this.decayTable = decayTable;
+            this.fetchFields = fetchFields;
+            this.groupWeights = groupWeights;
+            this.breaker = breaker;
+            this.maxGroups = maxGroups;
+        }
+
+        boolean fetchFields() {
+            return fetchFields;
+        }
+
+        /**
+         * Keep computed values of rescored hits to explain them or return as fields.
+         */
+        void recordHits(boolean recordHits) {
+            this.recordHits = recordHits;
+        }
+
+        RescoredHits rescoredHits() {
+            return rescoredHits;
+        }
+
+        /**
+         * Takes ownership of the reference to the recorded hits.
+         */
+        void rescoredHits(RescoredHits rescoredHits) {
+            releaseRescoredHits();
+            this.rescoredHits = rescoredHits;
+        }
+
+        void releaseRescoredHits() {
+            if (rescoredHits != null) {
+                rescoredHits.decRef();
+                rescoredHits = null;
+            }
         }
     }
 }
@@ -19,14 +19,21 @@
 
 package company.evo.elasticsearch.rescore;
 
+import company.evo.elasticsearch.profile.MixupProfile;
+import company.evo.elasticsearch.profile.MixupProfiles;
+import company.evo.elasticsearch.script.PositionDecay;
+
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.ParsingException;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.xcontent.ConstructingObjectParser;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.fielddata.IndexOrdinalsFieldData;
+import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.index.query.QueryRewriteContext;
 import org.elasticsearch.index.query.SearchExecutionContext;
 import org.elasticsearch.script.ScoreScript;
@@ -35,12 +42,19 @@ import org.elasticsearch.search.rescore.RescoreContext;
 import org.elasticsearch.search.rescore.RescorerBuilder;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.Objects;
 
 public class GroupingMixupRescorerBuilder extends RescorerBuilder<GroupingMixupRescorerBuilder> {
     public static final String NAME = "grouping_mixup";
     private static ParseField GROUPING_FIELD_FIELD = new ParseField("field", "group_field");
     private static ParseField RESCORE_SCRIPT_FIELD = new ParseField("rescore_script", "decline_script");
+    private static ParseField FETCH_FIELDS_FIELD = new ParseField("fetch_fields");
+    private static ParseField WEIGHT_TABLE_FIELD = new ParseField("weight_table");
+    private static ParseField ADAPTIVE_WINDOW_FIELD = new ParseField("adaptive_window");
+    private static ParseField GROUPING_MODE_FIELD = new ParseField("grouping_mode");
+    private static ParseField GROUP_SIZES_FIELD = new ParseField("group_sizes");
+    private static ParseField PROFILE_FIELD = new ParseField("profile");
 
     private static final ConstructingObjectParser<GroupingMixupRescorerBuilder, Void> PARSER =
            new ConstructingObjectParser<>(
@@ -48,12 +62,30 @@ public class GroupingMixupRescorerBuilder extends RescorerBuilder<GroupingMixupR
                    args -> new GroupingMixupRescorerBuilder((String) args[0], (Script) args[1])
            );
     static {
-        PARSER.declareString(ConstructingObjectParser.constructorArg(), GROUPING_FIELD_FIELD);
-        PARSER.declareObject(ConstructingObjectParser.constructorArg(), (p, c) -> Script.parse(p), RESCORE_SCRIPT_FIELD);
+        PARSER.declareString(ConstructingObjectParser.optionalConstructorArg(), GROUPING_FIELD_FIELD);
+        PARSER.declareObject(
+                ConstructingObjectParser.optionalConstructorArg(), (p, c) -> Script.parse(p), RESCORE_SCRIPT_FIELD
+        );
+        PARSER.declareBoolean(GroupingMixupRescorerBuilder::fetchFields, FETCH_FIELDS_FIELD);
+        PARSER.declareString(GroupingMixupRescorerBuilder::weightTable, WEIGHT_TABLE_FIELD);
+        PARSER.declareObject(
+                GroupingMixupRescorerBuilder::adaptiveWindow, (p, c) -> AdaptiveWindow.fromXContent(p), ADAPTIVE_WINDOW_FIELD
+        );
+        PARSER.declareString(
+                (builder, mode) -> builder.groupingMode(GroupingMode.fromString(mode)), GROUPING_MODE_FIELD
+        );
+        PARSER.declareBoolean(GroupingMixupRescorerBuilder::groupSizes, GROUP_SIZES_FIELD);
+        PARSER.declareString(GroupingMixupRescorerBuilder::profile, PROFILE_FIELD);
     }
 
     private final String groupByField;
     private final Script rescoreScript;
+    private boolean fetchFields = false;
+    private String weightTable = null;
+    private AdaptiveWindow adaptiveWindow = null;
+    private GroupingMode groupingMode = null;
+    private Boolean groupSizes = null;
+    private String profile = null;
 
     GroupingMixupRescorerBuilder(String groupByField, Script rescoreScript) {
         super();
@@ -63,21 +95,107 @@ public class GroupingMixupRescorerBuilder extends RescorerBuilder<GroupingMixupR
 
     public GroupingMixupRescorerBuilder(StreamInput in) throws IOException {
         super(in);
-        this.groupByField = in.readString();
-        this.rescoreScript = new Script(in);
+        this.groupByField = in.readOptionalString();
+        this.rescoreScript = in.readOptionalWriteable(Script::new);
+        this.fetchFields = in.readBoolean();
+        this.weightTable = in.readOptionalString();
+        this.adaptiveWindow = in.readOptionalWriteable(AdaptiveWindow::new);
+        this.groupingMode = in.readBoolean() ? GroupingMode.readFrom(in) : null;
+        this.groupSizes = in.readOptionalBoolean();
+        this.profile = in.readOptionalString();
+    }
+
+    /**
+     * Return position and decline factor of rescored hits as hit fields.
+     */
+    public GroupingMixupRescorerBuilder fetchFields(boolean fetchFields) {
+        this.fetchFields = fetchFields;
+        return this;
+    }
+
+    /**
+     * Name of a weight table that contains position multipliers for groups.
+     */
+    public GroupingMixupRescorerBuilder weightTable(String weightTable) {
+        this.weightTable = weightTable;
+        return this;
+    }
+
+    /**
+     * Rescore only as many hits as needed to get enough distinct groups.
+     * Window size becomes the maximum number of rescored hits.
+     */
+    public GroupingMixupRescorerBuilder adaptiveWindow(AdaptiveWindow adaptiveWindow) {
+        this.adaptiveWindow = adaptiveWindow;
+        return this;
+    }
+
+    /**
+     * Hashing group values makes grouping cost independent of their length.
+     */
+    public GroupingMixupRescorerBuilder groupingMode(GroupingMode groupingMode) {
+        this.groupingMode = Objects.requireNonNull(groupingMode);
+        return this;
+    }
+
+    /**
+     * Pass group sizes to the decline script as the {@code _group_size} parameter.
+     */
+    public GroupingMixupRescorerBuilder groupSizes(boolean groupSizes) {
+        this.groupSizes = groupSizes;
+        return this;
+    }
+
+    /**
+     * Name of a stored profile that provides defaults for the omitted options.
+     */
+    public GroupingMixupRescorerBuilder profile(String profile) {
+        this.profile = profile;
+        return this;
     }
 
     @Override
     public void doWriteTo(StreamOutput out) throws IOException {
-        out.writeString(groupByField);
-        rescoreScript.writeTo(out);
+        out.writeOptionalString(groupByField);
+        out.writeOptionalWriteable(rescoreScript);
+        out.writeBoolean(fetchFields);
+        out.writeOptionalString(weightTable);
+        out.writeOptionalWriteable(adaptiveWindow);
+        out.writeBoolean(groupingMode != null);
+        if (groupingMode != null) {
+            groupingMode.writeTo(out);
+        }
+        out.writeOptionalBoolean(groupSizes);
+        out.writeOptionalString(profile);
     }
 
     @Override
     public void doXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject(NAME);
-        builder.field(GROUPING_FIELD_FIELD.getPreferredName(), groupByField);
-        builder.field(RESCORE_SCRIPT_FIELD.getPreferredName(), rescoreScript);
+        if (groupByField != null) {
+            builder.field(GROUPING_FIELD_FIELD.getPreferredName(), groupByField);
+        }
+        if (rescoreScript != null) {
+            builder.field(RESCORE_SCRIPT_FIELD.getPreferredName(), rescoreScript);
+        }
+        if (fetchFields) {
+            builder.field(FETCH_FIELDS_FIELD.getPreferredName(), fetchFields);
+        }
+        if (weightTable != null) {
+            builder.field(WEIGHT_TABLE_FIELD.getPreferredName(), weightTable);
+        }
+        if (adaptiveWindow != null) {
+            builder.field(ADAPTIVE_WINDOW_FIELD.getPreferredName(), adaptiveWindow);
+        }
+        if (groupingMode != null) {
+            builder.field(GROUPING_MODE_FIELD.getPreferredName(), groupingMode.toString());
+        }
+        if (groupSizes != null) {
+            builder.field(GROUP_SIZES_FIELD.getPreferredName(), groupSizes);
+        }
+        if (profile != null) {
+            builder.field(PROFILE_FIELD.getPreferredName(), profile);
+        }
         builder.endObject();
     }
 
@@ -93,11 +211,94 @@ public class GroupingMixupRescorerBuilder extends RescorerBuilder<GroupingMixupR
 
     @Override
     public RescoreContext innerBuildContext(int windowSize, SearchExecutionContext context) {
-        IndexFieldData<?> groupingField =
-                this.groupByField == null ? null : context.getForField(context.getFieldType(this.groupByField));
-        ScoreScript.LeafFactory scriptFactory = context.compile(rescoreScript, ScoreScript.CONTEXT)
-                .newFactory(rescoreScript.getParams(), context.lookup());
-        return new GroupingMixupRescorer.Context(windowSize, groupingField, scriptFactory);
+        int maxWindowSize = GroupingMixupSettings.maxWindowSize();
+        if (windowSize > maxWindowSize) {
+            throw new IllegalArgumentException(
+                    "Rescore window [" + windowSize + "] is too large. It must be less than or equal to [" +
+                    maxWindowSize + "]. This limit can be set by changing the [" +
+                    GroupingMixupSettings.MAX_WINDOW_SIZE.getKey() + "] cluster level setting."
+            );
+        }
+        MixupProfiles.CompiledProfile compiledProfile = profile == null ? null : MixupProfiles.get(profile);
+        MixupProfile storedProfile = compiledProfile == null ? null : compiledProfile.profile();
+
+        String groupByField = this.groupByField != null ? this.groupByField : storedProfile.groupByField();
+        if (!context.isFieldMapped(groupByField)) {
+            // a profile can be used with indices that do not have its field
+            throw new IllegalArgumentException(
+                    "Group field [" + groupByField + "] is not mapped" +
+                    (profile != null ? ", grouping mixup profile [" + profile + "]" : "")
+            );
+        }
+        MappedFieldType groupingFieldType = context.getFieldType(groupByField);
+        IndexFieldData<?> groupingField = context.getForField(groupingFieldType);
+
+        // Profiles can have precalculated decline factors of the position-only scripts
+        ScoreScript.LeafFactory scriptFactory = null;
+        PositionDecayTable decayTable = null;
+        boolean scriptUsesGroupSize;
+        if (rescoreScript != null) {
+            ScoreScript.Factory factory = context.compile(rescoreScript, ScoreScript.CONTEXT);
+            scriptFactory = factory.newFactory(rescoreScript.getParams(), context.lookup());
+            scriptUsesGroupSize = usesGroupSize(factory, rescoreScript.getParams());
+        } else {
+            scriptUsesGroupSize = compiledProfile.usesGroupSize();
+            decayTable = compiledProfile.decayTable();
+            if (decayTable == null) {
+                scriptFactory = compiledProfile.scriptFactory().newFactory(
+                        storedProfile.rescoreScript().getParams(), context.lookup()
+                );
+            }
+        }
+
+        String weightTable = this.weightTable;
+        AdaptiveWindow adaptiveWindow = this.adaptiveWindow;
+        GroupingMode groupingMode = this.groupingMode;
+        Boolean groupSizes = this.groupSizes;
+        if (storedProfile != null) {
+            weightTable = weightTable != null ? weightTable : storedProfile.weightTable();
+            adaptiveWindow = adaptiveWindow != null ? adaptiveWindow : storedProfile.adaptiveWindow();
+            groupingMode = groupingMode != null ? groupingMode : storedProfile.groupingMode();
+            groupSizes = groupSizes != null ? groupSizes : storedProfile.groupSizes();
+        }
+        boolean countGroupSizes = scriptUsesGroupSize || Boolean.TRUE.equals(groupSizes);
+        // Global ordinals are used only when they are built on refresh,
+        // otherwise the first search after every refresh would have to build them
+        boolean explicitGroupingMode = groupingMode != null;
+        boolean globalOrdinals = false;
+        if (groupingMode == null) {
+            groupingMode = GroupingMode.VALUES;
+            globalOrdinals = groupingField instanceof IndexOrdinalsFieldData && groupingFieldType.eagerGlobalOrdinals();
+        }
+        // Sizes are counted with the terms of the group field found by global ordinals
+        if (countGroupSizes) {
+            String reason = null;
+            if (explicitGroupingMode) {
+                reason = "[" + GROUPING_MODE_FIELD.getPreferredName() + "] is set";
+            } else if (!globalOrdinals) {
+                reason = "the field does not have [eager_global_ordinals] enabled";
+            } else if (!groupingFieldType.isSearchable()) {
+                reason = "the field is not indexed";
+            }
+            if (reason != null) {
+                throw new IllegalArgumentException(
+                        "Group sizes are not available for the group field [" + groupByField + "]: " + reason +
+                        (profile != null ? ", grouping mixup profile [" + profile + "]" : "")
+                );
+            }
+        }
+
+        WeightTable groupWeights = weightTable == null ? null : WeightTables.get(weightTable);
+        CircuitBreaker breaker = context.bigArrays().breakerService().getBreaker(CircuitBreaker.REQUEST);
+        return new GroupingMixupRescorer.Context(
+                windowSize, adaptiveWindow, groupingField, groupingMode, globalOrdinals, countGroupSizes,
+                scriptFactory, decayTable, fetchFields, groupWeights, breaker, GroupingMixupSettings.maxGroups()
+        );
+    }
+
+    private static boolean usesGroupSize(ScoreScript.Factory factory, Map<String, Object> params) {
+        return factory instanceof PositionDecay.Factory
+                && ((PositionDecay.Factory) factory).newDecay(params).usesGroupSize();
     }
 
     @Override
@@ -106,18 +307,36 @@ public class GroupingMixupRescorerBuilder extends RescorerBuilder<GroupingMixupR
             return false;
         }
         GroupingMixupRescorerBuilder other = (GroupingMixupRescorerBuilder) obj;
-        return groupByField.equals(other.groupByField)
-                && rescoreScript.equals(other.rescoreScript);
+        return Objects.equals(groupByField, other.groupByField)
+                && Objects.equals(rescoreScript, other.rescoreScript)
+                && fetchFields == other.fetchFields
+                && Objects.equals(weightTable, other.weightTable)
+                && Objects.equals(adaptiveWindow, other.adaptiveWindow)
+                && groupingMode == other.groupingMode
+                && Objects.equals(groupSizes, other.groupSizes)
+                && Objects.equals(profile, other.profile);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), groupByField, rescoreScript);
+        return Objects.hash(
+                super.hashCode(), groupByField, rescoreScript, fetchFields, weightTable, adaptiveWindow, groupingMode,
+                groupSizes, profile
+        );
     }
 
     public static GroupingMixupRescorerBuilder fromXContent(XContentParser parser)
             throws ParsingException
     {
-        return PARSER.apply(parser, null);
+        GroupingMixupRescorerBuilder builder = PARSER.apply(parser, null);
+        if (builder.profile == null && (builder.groupByField == null || builder.rescoreScript == null)) {
+            throw new ParsingException(
+                    parser.getTokenLocation(),
+                    "[" + NAME + "] requires [" + GROUPING_FIELD_FIELD.getPreferredName() + "] and [" +
+                    RESCORE_SCRIPT_FIELD.getPreferredName() + "] unless a [" + PROFILE_FIELD.getPreferredName() +
+                    "] is specified"
+            );
+        }
+        return builder;
     }
 }
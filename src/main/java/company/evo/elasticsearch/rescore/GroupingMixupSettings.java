@@ -0,0 +1,73 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Settings that limit resources a single rescore request can use.
+ */
+public final class GroupingMixupSettings {
+    public static final Setting<Integer> MAX_WINDOW_SIZE = Setting.intSetting(
+            "grouping_mixup.max_window_size", 10_000, 1, Property.NodeScope, Property.Dynamic
+    );
+    public static final Setting<Integer> MAX_GROUPS = Setting.intSetting(
+            "grouping_mixup.max_groups", 10_000, 1, Property.NodeScope, Property.Dynamic
+    );
+    public static final Setting<Integer> POOLED_WINDOW_SIZE = Setting.intSetting(
+            "grouping_mixup.pooled_window_size", 4096, 0, Property.NodeScope
+    );
+
+    private static volatile int maxWindowSize = MAX_WINDOW_SIZE.getDefault(Settings.EMPTY);
+    private static volatile int maxGroups = MAX_GROUPS.getDefault(Settings.EMPTY);
+    private static volatile int pooledWindowSize = POOLED_WINDOW_SIZE.getDefault(Settings.EMPTY);
+
+    private GroupingMixupSettings() {}
+
+    public static List<Setting<?>> settings() {
+        return Arrays.asList(MAX_WINDOW_SIZE, MAX_GROUPS, POOLED_WINDOW_SIZE);
+    }
+
+    public static void init(Settings settings, ClusterSettings clusterSettings) {
+        maxWindowSize = MAX_WINDOW_SIZE.get(settings);
+        maxGroups = MAX_GROUPS.get(settings);
+        pooledWindowSize = POOLED_WINDOW_SIZE.get(settings);
+        clusterSettings.addSettingsUpdateConsumer(MAX_WINDOW_SIZE, value -> maxWindowSize = value);
+        clusterSettings.addSettingsUpdateConsumer(MAX_GROUPS, value -> maxGroups = value);
+    }
+
+    static int maxWindowSize() {
+        return maxWindowSize;
+    }
+
+    static int maxGroups() {
+        return maxGroups;
+    }
+
+    static int pooledWindowSize() {
+        return pooledWindowSize;
+    }
+}
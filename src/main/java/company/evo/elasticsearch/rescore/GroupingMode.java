@@ -0,0 +1,63 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * How hits are split into groups.
+ */
+public enum GroupingMode implements Writeable {
+    /**
+     * Exact group values are compared.
+     */
+    VALUES,
+    /**
+     * Only 64-bit hashes of group values are compared.
+     */
+    HASH,
+    /**
+     * Hashes of group values are compared, values are compared only when hashes are equal.
+     */
+    CHECKED_HASH;
+
+    public static GroupingMode fromString(String mode) {
+        return valueOf(mode.toUpperCase(Locale.ROOT));
+    }
+
+    public static GroupingMode readFrom(StreamInput in) throws IOException {
+        return in.readEnum(GroupingMode.class);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeEnum(this);
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.elasticsearch.common.hash.MurmurHash3;
+
+import java.util.Arrays;
+
+/**
+ * Groups values by their 64-bit hashes (see {@link GroupKeys}). Values are hashed in place
+ * so the cost does not depend on their length. Different values with the same hash
+ * fall into the same group unless collision check is enabled. In that case values
+ * are stored and compared like in {@link GroupValuesTable}.
+ */
+final class HashGroupTable implements GroupTable.Values {
+    private static final int EMPTY = -1;
+    private static final float LOAD_FACTOR = 0.5F;
+
+    private final boolean checkCollisions;
+    private long[] keys = new long[16];
+    private int[] slots = new int[32];
+    private int mask = slots.length - 1;
+    private int size = 0;
+
+    // stored values, only when collisions are checked
+    private byte[] bytes = BytesRef.EMPTY_BYTES;
+    private int bytesLength = 0;
+    private int[] offsets = new int[1];
+
+    private final MurmurHash3.Hash128 hash128 = new MurmurHash3.Hash128();
+    private final BytesRef spare = new BytesRef();
+    private final BytesRefBuilder labelBuilder = new BytesRefBuilder();
+
+    HashGroupTable(boolean checkCollisions) {
+        this.checkCollisions = checkCollisions;
+        Arrays.fill(slots, EMPTY);
+    }
+
+    @Override
+    public int add(BytesRef value) {
+        long key = GroupKeys.hash(value, hash128);
+        int slot = mix(key) & mask;
+        while (true) {
+            int id = slots[slot];
+            if (id == EMPTY) {
+                break;
+            }
+            if (keys[id] == key && (!checkCollisions || equals(id, value))) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = size++;
+        keys = ArrayUtil.grow(keys, size);
+        keys[id] = key;
+        if (checkCollisions) {
+            offsets = ArrayUtil.grow(offsets, size + 1);
+            bytes = ArrayUtil.grow(bytes, bytesLength + value.length);
+            System.arraycopy(value.bytes, value.offset, bytes, bytesLength, value.length);
+            bytesLength += value.length;
+            offsets[size] = bytesLength;
+        }
+        slots[slot] = id;
+        if (size > slots.length * LOAD_FACTOR) {
+            rehash();
+        }
+        return id;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long bytesUsed() {
+        return bytesLength;
+    }
+
+    @Override
+    public long key(int id) {
+        return keys[id];
+    }
+
+    @Override
+    public BytesRef label(int id) {
+        if (checkCollisions) {
+            spare.bytes = bytes;
+            spare.offset = offsets[id];
+            spare.length = offsets[id + 1] - offsets[id];
+            return spare;
+        }
+        labelBuilder.copyChars("#" + Long.toHexString(keys[id]));
+        return labelBuilder.get();
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(slots, EMPTY);
+        }
+        size = 0;
+        bytesLength = 0;
+    }
+
+    int bytesCapacity() {
+        return bytes.length;
+    }
+
+    private boolean equals(int id, BytesRef value) {
+        return Arrays.equals(
+                bytes, offsets[id], offsets[id + 1],
+                value.bytes, value.offset, value.offset + value.length
+        );
+    }
+
+    private static int mix(long key) {
+        return (int) (key ^ (key >>> 32));
+    }
+
+    private void rehash() {
+        slots = new int[slots.length << 1];
+        Arrays.fill(slots, EMPTY);
+        mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(keys[id]) & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id;
+        }
+    }
+}
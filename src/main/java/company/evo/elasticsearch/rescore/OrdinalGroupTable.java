@@ -0,0 +1,181 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.hash.MurmurHash3;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Groups hits by global ordinals of the group field, so group values are neither
+ * read nor compared. Fields with few ordinals map ordinals to group ids with a dense array,
+ * fields with many ordinals use an open addressing table, see {@link #reset(long, int)}.
+ */
+final class OrdinalGroupTable implements GroupTable {
+    static final long MISSING_ORD = -1;
+
+    // dense array is used when it takes at most that many slots per hit
+    static final int DENSE_ORDINALS_PER_HIT = 16;
+    // or when it is small anyway
+    static final int MIN_DENSE_ORDINALS = 4096;
+
+    private static final int EMPTY = -1;
+    private static final float LOAD_FACTOR = 0.5F;
+
+    private boolean dense = false;
+    // group ids indexed by ordinal + 1, the first slot is for documents without values
+    private int[] denseIds = new int[0];
+    private int[] slots = new int[32];
+    private int mask = slots.length - 1;
+    private long[] ords = new long[16];
+    private int size = 0;
+    private SortedSetDocValues lookup;
+
+    private final MurmurHash3.Hash128 hash128 = new MurmurHash3.Hash128();
+
+    OrdinalGroupTable() {
+        Arrays.fill(slots, EMPTY);
+    }
+
+    /**
+     * Prepares the table for the field with the given number of global ordinals.
+     * Returns {@code true} if the dense array was chosen.
+     */
+    boolean reset(long valueCount, int windowSize) {
+        assert size == 0;
+        dense = valueCount < MIN_DENSE_ORDINALS || valueCount <= (long) DENSE_ORDINALS_PER_HIT * windowSize;
+        if (dense && denseIds.length <= valueCount) {
+            denseIds = new int[ArrayUtil.oversize((int) valueCount + 1, Integer.BYTES)];
+            Arrays.fill(denseIds, EMPTY);
+        }
+        return dense;
+    }
+
+    /**
+     * Doc values used to look up group labels, ordinals must be global.
+     */
+    void lookup(SortedSetDocValues lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * Returns an id of the group adding it into the table if it is not there yet.
+     */
+    int add(long ord) {
+        if (dense) {
+            int ix = (int) ord + 1;
+            int id = denseIds[ix];
+            if (id == EMPTY) {
+                id = newGroup(ord);
+                denseIds[ix] = id;
+            }
+            return id;
+        }
+
+        int slot = mix(ord) & mask;
+        while (true) {
+            int id = slots[slot];
+            if (id == EMPTY) {
+                break;
+            }
+            if (ords[id] == ord) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int id = newGroup(ord);
+        slots[slot] = id;
+        if (size > slots.length * LOAD_FACTOR) {
+            rehash();
+        }
+        return id;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long bytesUsed() {
+        return dense ? (long) denseIds.length * Integer.BYTES : 0;
+    }
+
+    @Override
+    public long key(int id) throws IOException {
+        return GroupKeys.hash(label(id), hash128);
+    }
+
+    @Override
+    public BytesRef label(int id) throws IOException {
+        long ord = ords[id];
+        return ord == MISSING_ORD ? new BytesRef() : lookup.lookupOrd(ord);
+    }
+
+    @Override
+    public void clear() {
+        if (dense) {
+            // only touched slots have to be reset
+            for (int id = 0; id < size; id++) {
+                denseIds[(int) ords[id] + 1] = EMPTY;
+            }
+        } else if (size > 0) {
+            Arrays.fill(slots, EMPTY);
+        }
+        size = 0;
+        lookup = null;
+    }
+
+    /**
+     * Global ordinal of the group or {@link #MISSING_ORD} for documents without values.
+     */
+    long ord(int id) {
+        return ords[id];
+    }
+
+    private int newGroup(long ord) {
+        int id = size++;
+        ords = ArrayUtil.grow(ords, size);
+        ords[id] = ord;
+        return id;
+    }
+
+    private static int mix(long ord) {
+        // ordinals are sequential, spread them with Fibonacci hashing
+        return (int) ((ord * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    private void rehash() {
+        slots = new int[slots.length << 1];
+        Arrays.fill(slots, EMPTY);
+        mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(ords[id]) & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import company.evo.elasticsearch.script.PositionDecay;
+
+/**
+ * Decline factors precalculated for the first integer positions.
+ * Other positions and functions of the group size are calculated with the decay function.
+ */
+public final class PositionDecayTable {
+    private final PositionDecay decay;
+    private final float[] factors;
+
+    public PositionDecayTable(PositionDecay decay, int size) {
+        this.decay = decay;
+        this.factors = new float[decay.usesGroupSize() ? 0 : size];
+        for (int position = 0; position < factors.length; position++) {
+            factors[position] = (float) decay.decay(position, 0.0);
+        }
+    }
+
+    float factor(int position, float weight, double groupSize) {
+        if (weight == 1.0F && position < factors.length) {
+            return factors[position];
+        }
+        return (float) decay.decay((double) (position * weight), groupSize);
+    }
+}
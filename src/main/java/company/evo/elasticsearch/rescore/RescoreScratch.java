@@ -0,0 +1,164 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.util.Arrays;
+
+/**
+ * Working buffers of {@link GroupingMixupRescorer}. Every search thread keeps its own instance
+ * and reuses it between requests. Buffers for windows larger than the
+ * {@link GroupingMixupSettings#POOLED_WINDOW_SIZE} are allocated per request and are not retained.
+ */
+final class RescoreScratch {
+    private static final ThreadLocal<RescoreScratch> POOL = new ThreadLocal<>();
+    // do not retain buffers for unusually long group values
+    private static final int MAX_RETAINED_BYTES_PER_HIT = 64;
+
+    private final boolean pooled;
+    private boolean acquired = false;
+
+    // document id in the upper half and hit index in the lower half, used to iterate hits in document order
+    long[] docKeys = new long[0];
+    int[] groupIds = new int[0];
+    int[] positions = new int[0];
+    float[] factors = new float[0];
+    int[] groupCounters = new int[0];
+    float[] groupWeights = new float[0];
+    int[] groupSizes = new int[0];
+    private GroupValuesTable groupValues = new GroupValuesTable();
+    private HashGroupTable hashGroups = new HashGroupTable(false);
+    private HashGroupTable checkedHashGroups = new HashGroupTable(true);
+    private final OrdinalGroupTable ordinalGroups = new OrdinalGroupTable();
+
+    private RescoreScratch(boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    static RescoreScratch acquire(int windowSize) {
+        RescoreScratch scratch;
+        if (windowSize > GroupingMixupSettings.pooledWindowSize()) {
+            scratch = new RescoreScratch(false);
+        } else {
+            scratch = POOL.get();
+            if (scratch == null) {
+                scratch = new RescoreScratch(true);
+                POOL.set(scratch);
+            } else if (scratch.acquired) {
+                // Several rescorers never run at the same time on a thread but let's be safe
+                scratch = new RescoreScratch(false);
+            }
+        }
+        scratch.acquired = true;
+        scratch.ensureHitsCapacity(windowSize);
+        return scratch;
+    }
+
+    void release() {
+        acquired = false;
+        long maxRetainedBytes = (long) MAX_RETAINED_BYTES_PER_HIT * GroupingMixupSettings.pooledWindowSize();
+        if (groupValues.bytesCapacity() > maxRetainedBytes) {
+            groupValues = new GroupValuesTable();
+        } else {
+            groupValues.clear();
+        }
+        if (checkedHashGroups.bytesCapacity() > maxRetainedBytes) {
+            checkedHashGroups = new HashGroupTable(true);
+        } else {
+            checkedHashGroups.clear();
+        }
+        hashGroups.clear();
+        ordinalGroups.clear();
+    }
+
+    OrdinalGroupTable ordinalGroupTable() {
+        return ordinalGroups;
+    }
+
+    GroupTable.Values groupTable(GroupingMode mode) {
+        switch (mode) {
+            case HASH:
+                return hashGroups;
+            case CHECKED_HASH:
+                return checkedHashGroups;
+            default:
+                return groupValues;
+        }
+    }
+
+    /**
+     * Size of the arrays for hits and groups, group tables account their memory themselves.
+     */
+    long ramBytesUsed() {
+        return RamUsageEstimator.sizeOf(docKeys) + RamUsageEstimator.sizeOf(groupIds) +
+                RamUsageEstimator.sizeOf(positions) + RamUsageEstimator.sizeOf(factors) +
+                RamUsageEstimator.sizeOf(groupCounters) + RamUsageEstimator.sizeOf(groupWeights) +
+                RamUsageEstimator.sizeOf(groupSizes);
+    }
+
+    /**
+     * Returns zeroed counters for the given number of groups.
+     */
+    int[] groupCounters(int numGroups) {
+        if (groupCounters.length < numGroups) {
+            groupCounters = new int[ArrayUtil.oversize(numGroups, Integer.BYTES)];
+        } else {
+            Arrays.fill(groupCounters, 0, numGroups, 0);
+        }
+        return groupCounters;
+    }
+
+    /**
+     * Returns group weights initialized with ones for the given number of groups.
+     */
+    float[] groupWeights(int numGroups) {
+        if (groupWeights.length < numGroups) {
+            groupWeights = new float[ArrayUtil.oversize(numGroups, Float.BYTES)];
+        }
+        Arrays.fill(groupWeights, 0, numGroups, 1.0F);
+        return groupWeights;
+    }
+
+    /**
+     * Returns zeroed sizes for the given number of groups.
+     */
+    int[] groupSizes(int numGroups) {
+        if (groupSizes.length < numGroups) {
+            groupSizes = new int[ArrayUtil.oversize(numGroups, Integer.BYTES)];
+        } else {
+            Arrays.fill(groupSizes, 0, numGroups, 0);
+        }
+        return groupSizes;
+    }
+
+    private void ensureHitsCapacity(int windowSize) {
+        if (docKeys.length < windowSize) {
+            int capacity = pooled
+                    ? Math.min(ArrayUtil.oversize(windowSize, Long.BYTES), GroupingMixupSettings.pooledWindowSize())
+                    : windowSize;
+            docKeys = new long[capacity];
+            groupIds = new int[capacity];
+            positions = new int[capacity];
+            factors = new float[capacity];
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefArray;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.Counter;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.util.concurrent.AbstractRefCounted;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Values computed by {@link GroupingMixupRescorer} for every rescored hit of a single request.
+ * Hits are appended in increasing order of top level document ids, so a hit is found
+ * with a binary search. Group labels are stored once per group.
+ * The values can outlive the rescoring when they are passed to the fetch phase, so their memory
+ * is accounted in the circuit breaker until the last reference is released.
+ */
+final class RescoredHits extends AbstractRefCounted {
+    private final CircuitBreaker breaker;
+    private long reservedBytes = 0;
+
+    private final int[] docs;
+    private final int[] groupIds;
+    private final int[] positions;
+    private final float[] weights;
+    private final float[] factors;
+    private final BytesRefArray groupLabels = new BytesRefArray(Counter.newCounter());
+    private int[] groupSizes;
+    private int size = 0;
+    private float nonRescoredDelta = 0.0F;
+
+    RescoredHits(int capacity, CircuitBreaker breaker) {
+        super("grouping_mixup_rescored_hits");
+        this.breaker = breaker;
+        docs = new int[capacity];
+        groupIds = new int[capacity];
+        positions = new int[capacity];
+        weights = new float[capacity];
+        factors = new float[capacity];
+        reserve(
+                RamUsageEstimator.sizeOf(docs) + RamUsageEstimator.sizeOf(groupIds) +
+                RamUsageEstimator.sizeOf(positions) + RamUsageEstimator.sizeOf(weights) +
+                RamUsageEstimator.sizeOf(factors)
+        );
+    }
+
+    /**
+     * Copies labels and sizes, if they were counted, of all the groups, must be called before adding hits.
+     */
+    void setGroups(GroupTable groups, int[] groupSizes) throws IOException {
+        assert groupLabels.size() == 0;
+        for (int groupId = 0; groupId < groups.size(); groupId++) {
+            groupLabels.append(groups.label(groupId));
+        }
+        long groupBytes = groupLabels.ramBytesUsed();
+        if (groupSizes != null) {
+            this.groupSizes = Arrays.copyOf(groupSizes, groups.size());
+            groupBytes += RamUsageEstimator.sizeOf(this.groupSizes);
+        }
+        reserve(groupBytes);
+    }
+
+    void add(int doc, int groupId, int position, float weight, float factor) {
+        assert size == 0 || docs[size - 1] < doc : "documents must be added in increasing order";
+        assert groupId < groupLabels.size();
+        docs[size] = doc;
+        groupIds[size] = groupId;
+        positions[size] = position;
+        weights[size] = weight;
+        factors[size] = factor;
+        size++;
+    }
+
+    void setNonRescoredDelta(float delta) {
+        nonRescoredDelta = delta;
+    }
+
+    /**
+     * Returns an index of the hit or a negative value if the document was not rescored.
+     */
+    int find(int doc) {
+        return Arrays.binarySearch(docs, 0, size, doc);
+    }
+
+    BytesRef groupLabel(int ix, BytesRefBuilder spare) {
+        return groupLabels.get(spare, groupIds[ix]);
+    }
+
+    int position(int ix) {
+        return positions[ix];
+    }
+
+    float weight(int ix) {
+        return weights[ix];
+    }
+
+    float factor(int ix) {
+        return factors[ix];
+    }
+
+    boolean hasGroupSizes() {
+        return groupSizes != null;
+    }
+
+    /**
+     * Number of documents of the hit's group in the shard.
+     */
+    int groupSize(int ix) {
+        return groupSizes[groupIds[ix]];
+    }
+
+    /**
+     * Score that was subtracted from the hits outside of the rescore window
+     * to keep them below the rescored ones.
+     */
+    float nonRescoredDelta() {
+        return nonRescoredDelta;
+    }
+
+    @Override
+    protected void closeInternal() {
+        breaker.addWithoutBreaking(-reservedBytes);
+        reservedBytes = 0;
+    }
+
+    private void reserve(long bytes) {
+        breaker.addEstimateBytesAndMaybeBreak(bytes, GroupingMixupRescorer.BREAKER_LABEL);
+        reservedBytes += bytes;
+    }
+}
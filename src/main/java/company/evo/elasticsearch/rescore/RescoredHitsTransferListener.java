@@ -0,0 +1,187 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.index.shard.SearchOperationListener;
+import org.elasticsearch.search.internal.ReaderContext;
+import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.search.rescore.RescoreContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Enables recording of rescored hits when they are needed and passes values recorded
+ * by {@link GroupingMixupRescorer} from the query phase to the fetch phase.
+ * When the phases are executed separately the fetch phase gets a new search context
+ * with freshly built rescore contexts, so we keep recorded hits in the reader context
+ * that is shared between the phases. Reader contexts of point in time and scroll searches
+ * are shared between requests so nothing is passed through them.
+ * Every holder of recorded hits keeps its own reference, memory is released with the last one.
+ */
+public class RescoredHitsTransferListener implements SearchOperationListener {
+    private static final String RESCORED_HITS_KEY = "grouping_mixup_rescored_hits";
+
+    /**
+     * References to the recorded hits kept in the reader context.
+     */
+    private static final class TransferredHits implements Releasable {
+        private List<RescoredHits> rescoredHits;
+
+        TransferredHits(List<RescoredHits> rescoredHits) {
+            this.rescoredHits = rescoredHits;
+        }
+
+        synchronized List<RescoredHits> get() {
+            return rescoredHits;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (rescoredHits != null) {
+                for (RescoredHits hits : rescoredHits) {
+                    if (hits != null) {
+                        hits.decRef();
+                    }
+                }
+                rescoredHits = null;
+            }
+        }
+    }
+
+    @Override
+    public void onPreQueryPhase(SearchContext searchContext) {
+        List<RescoreContext> rescoreContexts = searchContext.rescore();
+        if (rescoreContexts == null) {
+            return;
+        }
+        boolean hasMixupContexts = false;
+        for (RescoreContext rescoreContext : rescoreContexts) {
+            if (rescoreContext instanceof GroupingMixupRescorer.Context) {
+                GroupingMixupRescorer.Context ctx = (GroupingMixupRescorer.Context) rescoreContext;
+                ctx.recordHits(searchContext.explain() || ctx.fetchFields());
+                hasMixupContexts = true;
+            }
+        }
+        if (hasMixupContexts) {
+            searchContext.addReleasable(() -> releaseRescoredHits(rescoreContexts));
+        }
+    }
+
+    @Override
+    public void onQueryPhase(SearchContext searchContext, long tookInNanos) {
+        List<RescoreContext> rescoreContexts = searchContext.rescore();
+        if (rescoreContexts == null || rescoreContexts.isEmpty()) {
+            return;
+        }
+        ReaderContext readerContext = searchContext.readerContext();
+        if (readerContext.singleSession() == false) {
+            // Point in time and scroll reader contexts are shared by several searches
+            return;
+        }
+        if (searchContext.queryResult().hasSearchContext() == false) {
+            // There will be no fetch phase, the reader context can be already released
+            return;
+        }
+        List<RescoredHits> rescoredHits = new ArrayList<>(rescoreContexts.size());
+        boolean hasRescoredHits = false;
+        for (RescoreContext rescoreContext : rescoreContexts) {
+            RescoredHits hits = null;
+            if (rescoreContext instanceof GroupingMixupRescorer.Context) {
+                hits = ((GroupingMixupRescorer.Context) rescoreContext).rescoredHits();
+                hasRescoredHits |= hits != null;
+            }
+            rescoredHits.add(hits);
+        }
+        if (hasRescoredHits) {
+            for (RescoredHits hits : rescoredHits) {
+                if (hits != null) {
+                    hits.incRef();
+                }
+            }
+            TransferredHits transferredHits = new TransferredHits(rescoredHits);
+            readerContext.addOnClose(transferredHits);
+            readerContext.putInContext(RESCORED_HITS_KEY, transferredHits);
+        }
+    }
+
+    @Override
+    public void onPreFetchPhase(SearchContext searchContext) {
+        ReaderContext readerContext = searchContext.readerContext();
+        if (readerContext == null || readerContext.singleSession() == false) {
+            return;
+        }
+        TransferredHits transferredHits = readerContext.getFromContext(RESCORED_HITS_KEY);
+        List<RescoredHits> rescoredHits = transferredHits == null ? null : transferredHits.get();
+        List<RescoreContext> rescoreContexts = searchContext.rescore();
+        if (rescoredHits == null || rescoreContexts == null || rescoredHits.size() != rescoreContexts.size()) {
+            return;
+        }
+        boolean transferred = false;
+        for (int i = 0; i < rescoreContexts.size(); i++) {
+            RescoreContext rescoreContext = rescoreContexts.get(i);
+            RescoredHits hits = rescoredHits.get(i);
+            if (rescoreContext instanceof GroupingMixupRescorer.Context && hits != null) {
+                GroupingMixupRescorer.Context ctx = (GroupingMixupRescorer.Context) rescoreContext;
+                if (ctx.rescoredHits() == null) {
+                    hits.incRef();
+                    ctx.rescoredHits(hits);
+                    transferred = true;
+                }
+            }
+        }
+        if (transferred) {
+            searchContext.addReleasable(() -> releaseRescoredHits(rescoreContexts));
+        }
+    }
+
+    @Override
+    public void onFetchPhase(SearchContext searchContext, long tookInNanos) {
+        releaseTransferredHits(searchContext);
+    }
+
+    @Override
+    public void onFailedFetchPhase(SearchContext searchContext) {
+        releaseTransferredHits(searchContext);
+    }
+
+    /**
+     * Recorded hits are not needed in the reader context after the fetch phase.
+     */
+    private static void releaseTransferredHits(SearchContext searchContext) {
+        ReaderContext readerContext = searchContext.readerContext();
+        if (readerContext == null) {
+            return;
+        }
+        TransferredHits transferredHits = readerContext.getFromContext(RESCORED_HITS_KEY);
+        if (transferredHits != null) {
+            transferredHits.close();
+        }
+    }
+
+    private static void releaseRescoredHits(List<RescoreContext> rescoreContexts) {
+        for (RescoreContext rescoreContext : rescoreContexts) {
+            if (rescoreContext instanceof GroupingMixupRescorer.Context) {
+                ((GroupingMixupRescorer.Context) rescoreContext).releaseRescoredHits();
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read only memory mapped table of group weights.
+ *
+ * <p>File layout, all numbers are big endian:
+ * <pre>
+ * int   magic ({@link #MAGIC})
+ * int   version ({@link #VERSION})
+ * int   number of entries
+ * int   reserved
+ * long  group keys, strictly increasing (see {@link GroupKeys})
+ * float weights in the same order as the keys, finite and non negative
+ * </pre>
+ */
+public final class WeightTable {
+    public static final int MAGIC = 0x474d5754;
+    public static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    private final String name;
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int weightsOffset;
+
+    private WeightTable(String name, ByteBuffer buffer, int size) {
+        this.name = name;
+        this.buffer = buffer;
+        this.size = size;
+        this.weightsOffset = HEADER_SIZE + size * Long.BYTES;
+    }
+
+    public static WeightTable open(String name, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Invalid size of the weight table file [" + path + "]: " + fileSize);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a weight table file [" + path + "]");
+            }
+            int version = buffer.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported version of the weight table file [" + path + "]: " + version);
+            }
+            int size = buffer.getInt(8);
+            if (size < 0 || fileSize != HEADER_SIZE + (long) size * (Long.BYTES + Float.BYTES)) {
+                throw new IOException("Weight table file [" + path + "] is truncated or corrupted");
+            }
+            WeightTable table = new WeightTable(name, buffer, size);
+            for (int i = 1; i < size; i++) {
+                if (table.keyAt(i - 1) >= table.keyAt(i)) {
+                    throw new IOException("Keys in the weight table file [" + path + "] are not sorted");
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                // weights multiply positions which must stay non negative numbers
+                float weight = table.weightAt(i);
+                if (!Float.isFinite(weight) || weight < 0.0F) {
+                    throw new IOException(
+                            "Invalid weight [" + weight + "] in the weight table file [" + path + "], " +
+                            "weights must be finite non negative numbers"
+                    );
+                }
+            }
+            return table;
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns weight for the key or {@code missingWeight} when there is no such key.
+     */
+    public float get(long key, float missingWeight) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = keyAt(mid);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return weightAt(mid);
+            }
+        }
+        return missingWeight;
+    }
+
+    private long keyAt(int ix) {
+        return buffer.getLong(HEADER_SIZE + ix * Long.BYTES);
+    }
+
+    private float weightAt(int ix) {
+        return buffer.getFloat(weightsOffset + ix * Float.BYTES);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.watcher.FileChangesListener;
+import org.elasticsearch.watcher.FileWatcher;
+import org.elasticsearch.watcher.ResourceWatcherService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Weight tables found in the {@code grouping-mixup} directory of the node config.
+ * A table name is a file name without the {@link #FILE_SUFFIX} suffix.
+ * Tables are reloaded when their files change. Requests that already resolved
+ * a table keep using the old one, so files should be replaced atomically.
+ */
+public final class WeightTables {
+    public static final String DIR_NAME = "grouping-mixup";
+    public static final String FILE_SUFFIX = ".weights";
+
+    private static final Logger logger = LogManager.getLogger(WeightTables.class);
+
+    private static final Map<String, WeightTable> tables = new ConcurrentHashMap<>();
+
+    private WeightTables() {}
+
+    public static void init(Path configDir, ResourceWatcherService resourceWatcherService) throws IOException {
+        FileWatcher watcher = new FileWatcher(configDir.resolve(DIR_NAME));
+        watcher.addListener(new FileChangesListener() {
+            @Override
+            public void onFileInit(Path file) {
+                load(file);
+            }
+
+            @Override
+            public void onFileCreated(Path file) {
+                load(file);
+            }
+
+            @Override
+            public void onFileChanged(Path file) {
+                load(file);
+            }
+
+            @Override
+            public void onFileDeleted(Path file) {
+                String name = tableName(file);
+                if (name != null && tables.remove(name) != null) {
+                    logger.info("removed weight table [{}]", name);
+                }
+            }
+        });
+        resourceWatcherService.add(watcher, ResourceWatcherService.Frequency.MEDIUM);
+    }
+
+    static WeightTable get(String name) {
+        WeightTable table = tables.get(name);
+        if (table == null) {
+            throw new IllegalArgumentException("Unknown weight table [" + name + "]");
+        }
+        return table;
+    }
+
+    private static void load(Path file) {
+        String name = tableName(file);
+        if (name == null) {
+            return;
+        }
+        try {
+            WeightTable table = WeightTable.open(name, file);
+            tables.put(name, table);
+            logger.info("loaded weight table [{}] with [{}] entries", name, table.size());
+        } catch (IOException e) {
+            // keep serving the previous version of the table
+            logger.warn(new ParameterizedMessage("failed to load weight table [{}] from [{}]", name, file), e);
+        }
+    }
+
+    private static String tableName(Path file) {
+        String fileName = file.getFileName().toString();
+        if (!fileName.endsWith(FILE_SUFFIX)) {
+            return null;
+        }
+        return fileName.substring(0, fileName.length() - FILE_SUFFIX.length());
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.script;
+
+import java.util.Map;
+
+/**
+ * Decline factor that depends only on a hit position inside its group and the size of the group.
+ * Script factories implementing {@link Factory} let the rescorer skip script execution.
+ */
+public interface PositionDecay {
+    double decay(double position, double groupSize);
+
+    /**
+     * Factors that do not depend on the group size can be precalculated by position.
+     * Group sizes are counted only for the decays that use them.
+     */
+    boolean usesGroupSize();
+
+    interface Factory {
+        PositionDecay newDecay(Map<String, Object> params);
+    }
+}
@@ -36,15 +36,18 @@ public class PositionRecipScript extends ScoreScript {
     private final double a;
     private final double b;
     private final double c;
+    private final double s;
 
-    private static final Map<String, Object> variables = new HashMap<>();
+    private final Map<String, Object> variables = new HashMap<>();
 
-    private PositionRecipScript(double m, double a, double b, double c, SearchLookup lookup, LeafReaderContext leafContext) {
+    private PositionRecipScript(double m, double a, double b, double c, double s,
+                                SearchLookup lookup, LeafReaderContext leafContext) {
         super(Collections.emptyMap(), lookup, leafContext);
         this.m = m;
         this.a = a;
         this.b = b;
         this.c = c;
+        this.s = s;
     }
 
     @Override
@@ -54,27 +57,59 @@ public class PositionRecipScript extends ScoreScript {
 
     @Override
     public double execute(ExplanationHolder explanation) {
-        return m / (a * (Double) variables.get(GroupingMixupRescorer.POSITION_PARAMETER_NAME) + b) + c;
+        double position = (Double) variables.get(GroupingMixupRescorer.POSITION_PARAMETER_NAME);
+        if (s == 0.0) {
+            return m / (a * position + b) + c;
+        }
+        Double groupSize = (Double) variables.get(GroupingMixupRescorer.GROUP_SIZE_PARAMETER_NAME);
+        if (groupSize == null) {
+            throw new IllegalArgumentException(
+                    "Group size is not available, it is counted only for fields with eager global ordinals"
+            );
+        }
+        return m / (a * position + s * Math.log1p(groupSize) + b) + c;
     }
 
-    public static class PositionRecipFactory implements ScoreScript.Factory, ScriptFactory {
+    public static class PositionRecipFactory implements ScoreScript.Factory, ScriptFactory, PositionDecay.Factory {
 
         @Override
         public boolean isResultDeterministic() {
             return true;
         }
 
+        @Override
+        public PositionDecay newDecay(Map<String, Object> params) {
+            double m = params.containsKey("m") ? (Double) params.get("m") : 1.0;
+            double a = params.containsKey("a") ? (Double) params.get("a") : 1.0;
+            double b = params.containsKey("b") ? (Double) params.get("b") : 1.0;
+            double c = params.containsKey("c") ? (Double) params.get("c") : 0.0;
+            double s = params.containsKey("s") ? (Double) params.get("s") : 0.0;
+
+            return new PositionDecay() {
+                @Override
+                public double decay(double position, double groupSize) {
+                    return m / (a * position + s * Math.log1p(groupSize) + b) + c;
+                }
+
+                @Override
+                public boolean usesGroupSize() {
+                    return s != 0.0;
+                }
+            };
+        }
+
         @Override
         public LeafFactory newFactory(Map<String, Object> params, SearchLookup lookup) {
             double m = params.containsKey("m") ? (Double) params.get("m") : 1.0;
             double a = params.containsKey("a") ? (Double) params.get("a") : 1.0;
             double b = params.containsKey("b") ? (Double) params.get("b") : 1.0;
             double c = params.containsKey("c") ? (Double) params.get("c") : 0.0;
+            double s = params.containsKey("s") ? (Double) params.get("s") : 0.0;
 
             return new LeafFactory() {
                 @Override
                 public ScoreScript newInstance(LeafReaderContext context) {
-                    return new PositionRecipScript(m, a, b, c, lookup, context);
+                    return new PositionRecipScript(m, a, b, c, s, lookup, context);
                 }
 
                 @Override
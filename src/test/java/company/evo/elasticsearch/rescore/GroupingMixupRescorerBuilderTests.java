@@ -20,6 +20,7 @@
 package company.evo.elasticsearch.rescore;
 
 import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.ParsingException;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.Writeable;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
@@ -35,6 +36,7 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.containsString;
 
 public class GroupingMixupRescorerBuilderTests extends AbstractWireSerializingTestCase<GroupingMixupRescorerBuilder> {
     @Override
@@ -50,13 +52,24 @@ public class GroupingMixupRescorerBuilderTests extends AbstractWireSerializingTe
 
     @Override
     protected GroupingMixupRescorerBuilder createTestInstance() {
-        String groupingField = randomAlphaOfLength(5);
+        String profile = randomBoolean() ? null : randomAlphaOfLength(5);
+        String groupingField = profile != null && randomBoolean() ? null : randomAlphaOfLength(5);
         Map<String, Object> scriptParams = new HashMap<>();
-        return new GroupingMixupRescorerBuilder(
-                groupingField,
-                new Script(ScriptType.INLINE, "grouping_mixup_scripts", "position_recip", scriptParams)
-        )
-                .windowSize(between(0, Integer.MAX_VALUE));
+        Script script = profile != null && randomBoolean()
+                ? null
+                : new Script(ScriptType.INLINE, "grouping_mixup_scripts", "position_recip", scriptParams);
+        GroupingMixupRescorerBuilder builder = new GroupingMixupRescorerBuilder(groupingField, script)
+                .profile(profile)
+                .fetchFields(randomBoolean())
+                .weightTable(randomBoolean() ? null : randomAlphaOfLength(5))
+                .adaptiveWindow(randomBoolean() ? null : new AdaptiveWindow(between(1, 1000), between(1, 100)));
+        if (randomBoolean()) {
+            builder.groupingMode(randomFrom(GroupingMode.values()));
+        }
+        if (randomBoolean()) {
+            builder.groupSizes(randomBoolean());
+        }
+        return builder.windowSize(between(0, Integer.MAX_VALUE));
     }
 
     @Override
@@ -81,4 +94,27 @@ public class GroupingMixupRescorerBuilderTests extends AbstractWireSerializingTe
         String serializedJson = BytesReference.bytes(contentBuilder).utf8ToString();
         assertEquals(json, serializedJson);
     }
+
+    public void testProfile() throws IOException {
+        String json = "{" +
+                "\"window_size\":100," +
+                "\"grouping_mixup\":{" +
+                    "\"field\":\"manufacturer\"," +
+                    "\"profile\":\"default\"" +
+                "}}";
+        XContentParser parser = createParser(JsonXContent.jsonXContent, json);
+        assertEquals(XContentParser.Token.START_OBJECT, parser.nextToken());
+        GroupingMixupRescorerBuilder rescorerBuilder = (GroupingMixupRescorerBuilder) RescorerBuilder.parseFromXContent(parser);
+        XContentBuilder contentBuilder = JsonXContent.contentBuilder();
+        rescorerBuilder.toXContent(contentBuilder, null);
+        assertEquals(json, BytesReference.bytes(contentBuilder).utf8ToString());
+    }
+
+    public void testMissingScriptWithoutProfile() throws IOException {
+        String json = "{\"grouping_mixup\":{\"field\":\"manufacturer\"}}";
+        XContentParser parser = createParser(JsonXContent.jsonXContent, json);
+        assertEquals(XContentParser.Token.START_OBJECT, parser.nextToken());
+        ParsingException e = expectThrows(ParsingException.class, () -> RescorerBuilder.parseFromXContent(parser));
+        assertThat(e.getMessage(), containsString("unless a [profile] is specified"));
+    }
 }
@@ -0,0 +1,94 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package company.evo.elasticsearch.rescore;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class WeightTableTests extends ESTestCase {
+    public void testLookup() throws IOException {
+        Path path = createTempDir().resolve("premium" + WeightTables.FILE_SUFFIX);
+        writeTable(path, new long[] {-5L, 3L, 42L}, new float[] {0.5F, 0.25F, 2.0F});
+
+        WeightTable table = WeightTable.open("premium", path);
+        assertEquals(3, table.size());
+        assertEquals(0.5F, table.get(-5L, 1.0F), 0.0F);
+        assertEquals(0.25F, table.get(3L, 1.0F), 0.0F);
+        assertEquals(2.0F, table.get(42L, 1.0F), 0.0F);
+        assertEquals(1.0F, table.get(4L, 1.0F), 0.0F);
+        assertEquals(1.0F, table.get(Long.MAX_VALUE, 1.0F), 0.0F);
+    }
+
+    public void testEmptyTable() throws IOException {
+        Path path = createTempDir().resolve("empty" + WeightTables.FILE_SUFFIX);
+        writeTable(path, new long[0], new float[0]);
+
+        WeightTable table = WeightTable.open("empty", path);
+        assertEquals(0, table.size());
+        assertEquals(1.0F, table.get(0L, 1.0F), 0.0F);
+    }
+
+    public void testUnsortedKeys() throws IOException {
+        Path path = createTempDir().resolve("unsorted" + WeightTables.FILE_SUFFIX);
+        writeTable(path, new long[] {3L, 1L}, new float[] {0.5F, 0.25F});
+
+        IOException exc = expectThrows(IOException.class, () -> WeightTable.open("unsorted", path));
+        assertTrue(exc.getMessage(), exc.getMessage().contains("are not sorted"));
+    }
+
+    public void testTruncatedFile() throws IOException {
+        Path path = createTempDir().resolve("truncated" + WeightTables.FILE_SUFFIX);
+        writeTable(path, new long[] {1L, 2L}, new float[] {0.5F});
+
+        IOException exc = expectThrows(IOException.class, () -> WeightTable.open("truncated", path));
+        assertTrue(exc.getMessage(), exc.getMessage().contains("truncated or corrupted"));
+    }
+
+    public void testInvalidWeights() throws IOException {
+        for (float weight : new float[] {-0.5F, Float.NaN, Float.POSITIVE_INFINITY}) {
+            Path path = createTempDir().resolve("invalid" + WeightTables.FILE_SUFFIX);
+            writeTable(path, new long[] {1L, 2L}, new float[] {0.5F, weight});
+
+            IOException exc = expectThrows(IOException.class, () -> WeightTable.open("invalid", path));
+            assertTrue(exc.getMessage(), exc.getMessage().contains("Invalid weight [" + weight + "]"));
+        }
+    }
+
+    private static void writeTable(Path path, long[] keys, float[] weights) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(path);
+             DataOutputStream out = new DataOutputStream(stream)) {
+            out.writeInt(WeightTable.MAGIC);
+            out.writeInt(WeightTable.VERSION);
+            out.writeInt(keys.length);
+            out.writeInt(0);
+            for (long key : keys) {
+                out.writeLong(key);
+            }
+            for (float weight : weights) {
+                out.writeFloat(weight);
+            }
+        }
+    }
+}